@@ -10,6 +10,8 @@ const AdminPanel = () => {
   const [revenueStats, setRevenueStats] = useState(null);
   const [loading, setLoading] = useState(true);
   const [ordersLoading, setOrdersLoading] = useState(false);
+  const [ordersCursor, setOrdersCursor] = useState(null);
+  const [orderStatusFilter, setOrderStatusFilter] = useState('');
   const [showForm, setShowForm] = useState(false);
   const [editingSweet, setEditingSweet] = useState(null);
   const [formData, setFormData] = useState({
@@ -19,6 +21,7 @@ const AdminPanel = () => {
     price: '',
     quantity: '',
     imageUrl: '',
+    reorderThreshold: '',
   });
 
   useEffect(() => {
@@ -31,6 +34,12 @@ const AdminPanel = () => {
     }
   }, [activeTab]);
 
+  useEffect(() => {
+    if (activeTab === 'orders') {
+      loadOrders();
+    }
+  }, [orderStatusFilter]);
+
   const loadSweets = async () => {
     try {
       setLoading(true);
@@ -43,12 +52,18 @@ const AdminPanel = () => {
     }
   };
 
-  const loadOrders = async () => {
+  // Without a cursor the list starts over; with one the next page is appended
+  const loadOrders = async (cursor = null) => {
     try {
       setOrdersLoading(true);
-      const response = await orderService.getAllOrders();
+      const params = {};
+      if (orderStatusFilter) params.status = orderStatusFilter;
+      if (cursor) params.cursor = cursor;
+      const response = await orderService.getAllOrders(params);
       if (response && response.success) {
-        setOrders(response.data || []);
+        const page = response.data || [];
+        setOrders((prev) => (cursor ? [...prev, ...page] : page));
+        setOrdersCursor(response.nextCursor || null);
       } else {
         alert('Failed to load orders');
       }
@@ -87,15 +102,19 @@ const AdminPanel = () => {
           alert('Error: Sweet ID not found');
           return;
         }
-        // Ensure category is included from the original sweet when editing
+        // Ensure category is included from the original sweet when editing; an empty threshold means the default
         const updateData = {
           ...formData,
-          category: formData.category || editingSweet.category || null
+          category: formData.category || editingSweet.category || null,
+          reorderThreshold: formData.reorderThreshold === '' ? null : formData.reorderThreshold
         };
         await sweetService.updateSweet(sweetId, updateData);
         alert('Sweet updated successfully!');
       } else {
-        await sweetService.createSweet(formData);
+        await sweetService.createSweet({
+          ...formData,
+          reorderThreshold: formData.reorderThreshold === '' ? null : formData.reorderThreshold
+        });
         alert('Sweet created successfully!');
       }
       resetForm();
@@ -115,6 +134,7 @@ const AdminPanel = () => {
       price: sweet.price,
       quantity: sweet.quantity,
       imageUrl: sweet.imageUrl || '',
+      reorderThreshold: sweet.reorderThreshold ?? '',
     });
     setShowForm(true);
   };
@@ -173,6 +193,7 @@ const AdminPanel = () => {
       price: '',
       quantity: '',
       imageUrl: '',
+      reorderThreshold: '',
     });
     setEditingSweet(null);
     setShowForm(false);
@@ -319,10 +340,23 @@ const AdminPanel = () => {
                     </div>
                   </div>
 
+                  <div>
+                    <label className="block text-gray-700 font-semibold mb-2">Reorder threshold (optional)</label>
+                    <input
+                      type="number"
+                      min="0"
+                      value={formData.reorderThreshold}
+                      onChange={(e) => setFormData({ ...formData, reorderThreshold: e.target.value })}
+                      placeholder="Store default"
+                      className="w-full px-4 py-3 border border-gray-300 rounded-lg focus:outline-none focus:ring-2 focus:ring-pink-500"
+                    />
+                  </div>
+
                   <div>
                     <label className="block text-gray-700 font-semibold mb-2">Image URL</label>
                     <input
-                      type="url"
+                      type="text"
+                      placeholder="https://... or /api/images/{hash}"
                       value={formData.imageUrl}
                       onChange={(e) => setFormData({ ...formData, imageUrl: e.target.value })}
                       className="w-full px-4 py-3 border border-gray-300 rounded-lg focus:outline-none focus:ring-2 focus:ring-pink-500"
@@ -381,8 +415,23 @@ const AdminPanel = () => {
         {/* Orders Tab */}
         {activeTab === 'orders' && (
           <div className="bg-white rounded-xl shadow-lg p-6">
-            <h2 className="text-2xl font-bold text-gray-800 mb-6">All Orders</h2>
-            {ordersLoading ? (
+            <div className="flex justify-between items-center mb-6">
+              <h2 className="text-2xl font-bold text-gray-800">All Orders</h2>
+              <select
+                value={orderStatusFilter}
+                onChange={(e) => setOrderStatusFilter(e.target.value)}
+                className="px-3 py-2 border border-gray-300 rounded-lg text-sm focus:outline-none focus:ring-2 focus:ring-pink-500"
+              >
+                <option value="">All statuses</option>
+                <option value="pending">Pending</option>
+                <option value="confirmed">Confirmed</option>
+                <option value="processing">Processing</option>
+                <option value="shipped">Shipped</option>
+                <option value="delivered">Delivered</option>
+                <option value="cancelled">Cancelled</option>
+              </select>
+            </div>
+            {ordersLoading && orders.length === 0 ? (
               <div className="text-center text-xl font-semibold text-gray-600">Loading orders...</div>
             ) : orders.length === 0 ? (
               <div className="text-center text-gray-600 text-xl py-12">
@@ -407,10 +456,10 @@ const AdminPanel = () => {
                       <tr key={order.id} className="border-b border-gray-100 hover:bg-gray-50">
                         <td className="py-3 px-4">{order.orderNumber || order.id}</td>
                         <td className="py-3 px-4">
-                          {order.user?.username || 'N/A'}
+                          {order.username || 'N/A'}
                         </td>
                         <td className="py-3 px-4">
-                          {order.items?.length || 0} item(s)
+                          {order.itemCount || 0} item(s)
                         </td>
                         <td className="py-3 px-4 font-semibold">₹{order.totalAmount?.toFixed(2) || '0.00'}</td>
                         <td className="py-3 px-4">
@@ -444,6 +493,17 @@ const AdminPanel = () => {
                     ))}
                   </tbody>
                 </table>
+                {ordersCursor && (
+                  <div className="text-center mt-6">
+                    <button
+                      onClick={() => loadOrders(ordersCursor)}
+                      disabled={ordersLoading}
+                      className="bg-gradient-to-r from-pink-500 to-purple-600 text-white px-6 py-3 rounded-lg font-semibold hover:from-pink-600 hover:to-purple-700 transition disabled:opacity-50"
+                    >
+                      {ordersLoading ? 'Loading...' : 'Load more'}
+                    </button>
+                  </div>
+                )}
               </div>
             )}
           </div>
@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { cartService } from '../services/cartService';
+import { imageSrc } from '../services/api';
 import './CartPage.css';
 
 const CartPage = () => {
@@ -106,7 +107,7 @@ const CartPage = () => {
             {cart.items.map((item) => (
               <div key={item.productId} className="cart-item">
                 <img 
-                  src={item.productImage || '/placeholder.jpg'} 
+                  src={imageSrc(item.productImage, 96) || '/placeholder.jpg'} 
                   alt={item.productName} 
                   className="cart-item-image"
                 />
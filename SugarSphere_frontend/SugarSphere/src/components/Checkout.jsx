@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { useNavigate, useLocation } from 'react-router-dom';
 import { cartService } from '../services/cartService';
+import { imageSrc } from '../services/api';
 import { orderService } from '../services/orderService';
 
 const Checkout = () => {
@@ -343,7 +344,7 @@ const Checkout = () => {
                 {cart.items.map((item, index) => (
                   <div key={index} className="flex items-center gap-4 p-4 border-b border-gray-200">
                     <img
-                      src={item.productImage || '/placeholder.jpg'}
+                      src={imageSrc(item.productImage, 96) || '/placeholder.jpg'}
                       alt={item.productName}
                       className="w-20 h-20 object-cover rounded-lg"
                     />
@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { sweetService } from '../services/sweetService';
+import { imageSrc } from '../services/api';
 import { useAuth } from '../context/AuthContext';
 
 const HomePage = () => {
@@ -139,7 +140,7 @@ const HomePage = () => {
                   <div className="relative h-64 bg-gradient-to-br from-pink-200 to-purple-200">
                     {sweet.imageUrl ? (
                       <img
-                        src={sweet.imageUrl}
+                        src={imageSrc(sweet.imageUrl, 480)}
                         alt={sweet.name}
                         className="w-full h-full object-cover"
                         onError={(e) => {
@@ -1,4 +1,5 @@
 import React from 'react';
+import { imageSrc } from '../services/api';
 
 const SweetCard = ({ sweet, onPurchase, onAddToCart, isAdmin, onEdit, onDelete }) => {
   const isOutOfStock = sweet.quantity === 0;
@@ -7,7 +8,7 @@ const SweetCard = ({ sweet, onPurchase, onAddToCart, isAdmin, onEdit, onDelete }
     <div className="bg-white rounded-xl shadow-lg overflow-hidden hover:shadow-2xl transition-shadow">
       <div className="h-48 bg-gradient-to-br from-pink-200 to-purple-200 flex items-center justify-center">
         {sweet.imageUrl ? (
-          <img src={sweet.imageUrl} alt={sweet.name} className="h-full w-full object-cover" />
+          <img src={imageSrc(sweet.imageUrl, 240)} alt={sweet.name} className="h-full w-full object-cover" />
         ) : (
           <span className="text-6xl">🍬</span>
         )}
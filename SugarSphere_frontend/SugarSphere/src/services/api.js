@@ -2,6 +2,16 @@ import axios from 'axios';
 
 const API_BASE_URL = 'http://localhost:8080/api';
 
+// Stored images are referenced as /api/images/{hash}; size picks a pre-rendered thumbnail (96, 240 or 480 px).
+// External URLs (not migrated yet) are returned unchanged
+export const imageSrc = (url, size) => {
+  if (!url || !url.startsWith('/api/images/')) {
+    return url;
+  }
+  const path = size ? `${url}/${size}` : url;
+  return API_BASE_URL.replace(/\/api$/, '') + path;
+};
+
 const api = axios.create({
   baseURL: API_BASE_URL,
   headers: {
@@ -1,5 +1,9 @@
 import api from './api';
 
+const unwrapPage = (body) => (body && body.success && body.data
+  ? { ...body, data: body.data.items, nextCursor: body.data.nextCursor }
+  : body);
+
 export const orderService = {
   createRazorpayOrder: async (amount) => {
     const response = await api.post('/orders/create-razorpay-order', { amount });
@@ -11,9 +15,10 @@ export const orderService = {
     return response.data;
   },
 
-  getUserOrders: async () => {
-    const response = await api.get('/orders');
-    return response.data;
+  // Orders come back a page at a time; data is the page's orders, nextCursor fetches the next one
+  getUserOrders: async (params = {}) => {
+    const response = await api.get('/orders', { params });
+    return unwrapPage(response.data);
   },
 
   getOrderById: async (orderId) => {
@@ -27,9 +32,10 @@ export const orderService = {
   },
 
   // Admin methods
-  getAllOrders: async () => {
-    const response = await api.get('/orders/admin/all');
-    return response.data;
+  // params: status, from, to (ISO date-time), cursor, size; pass back nextCursor to fetch the following page
+  getAllOrders: async (params = {}) => {
+    const response = await api.get('/orders/admin/all', { params: { size: 100, ...params } });
+    return unwrapPage(response.data);
   },
 
   getRevenueStats: async () => {
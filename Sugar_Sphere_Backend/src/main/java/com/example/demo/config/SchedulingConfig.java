@@ -0,0 +1,10 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Enables the @Scheduled background jobs (reservation expiry, ...)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
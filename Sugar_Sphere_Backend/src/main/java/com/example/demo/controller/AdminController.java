@@ -1,21 +1,36 @@
 package com.example.demo.controller;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.LowStockItem;
+import com.example.demo.exception.BadRequestException;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.InventoryWatcher;
+import com.example.demo.service.SweetExportService;
+import com.example.demo.service.SweetService;
 
+import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,6 +45,60 @@ public class AdminController {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private SweetExportService sweetExportService;
+    
+    @Autowired
+    private SweetService sweetService;
+    
+    @Autowired
+    private InventoryWatcher inventoryWatcher;
+    
+    // Sweets at or below their reorder threshold, emptiest first
+    @GetMapping("/inventory/low-stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<LowStockItem>>> getLowStock() {
+        return ResponseEntity.ok(ApiResponse.success(inventoryWatcher.getLowStock()));
+    }
+    
+    // Live low-stock / out-of-stock / restocked notifications
+    @GetMapping(value = "/inventory/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public SseEmitter streamInventory() {
+        return inventoryWatcher.subscribe();
+    }
+    
+    // One-off migration of external image URLs into the local image store
+    @PostMapping("/images/migrate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> migrateImages() {
+        return ResponseEntity.ok(ApiResponse.success(sweetService.migrateImages()));
+    }
+    
+    // Streams the catalog as NDJSON (default) or CSV, optionally gzipped and limited to recent changes
+    @GetMapping("/sweets/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportSweets(
+            @RequestParam(required = false, defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+            @RequestParam(required = false) String afterId,
+            @RequestParam(required = false, defaultValue = "false") boolean gzip) {
+        if (afterId != null && (updatedSince == null || !ObjectId.isValid(afterId))) {
+            throw new BadRequestException("afterId must be a MongoDB _id and needs updatedSince");
+        }
+        SweetExportService.Format exportFormat = SweetExportService.Format.parse(format);
+        String fileName = "sweets-export" + (exportFormat == SweetExportService.Format.CSV ? ".csv" : ".ndjson")
+                + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : exportFormat == SweetExportService.Format.CSV ? MediaType.parseMediaType("text/csv")
+                : MediaType.parseMediaType("application/x-ndjson");
+        StreamingResponseBody body = out -> sweetExportService.export(out, exportFormat, updatedSince, afterId, gzip);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+    
     // Endpoint to create admin user (only accessible if you're already admin or for initial setup)
     @PostMapping("/create-admin")
     public ResponseEntity<ApiResponse<User>> createAdmin(@RequestBody Map<String, String> request) {
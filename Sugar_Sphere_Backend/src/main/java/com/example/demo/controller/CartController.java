@@ -19,6 +19,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.CartBatchRequest;
+import com.example.demo.dto.CartBatchResponse;
 import com.example.demo.model.Cart;
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
@@ -125,6 +127,19 @@ public class CartController {
         }
     }
     
+    // Syncs a locally edited cart in one request; per-operation outcomes come back with the cart
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ApiResponse<CartBatchResponse>> batch(@RequestBody CartBatchRequest request) {
+        try {
+            User user = getCurrentUser();
+            CartBatchResponse response = cartService.applyBatch(user, request.getOperations());
+            return ResponseEntity.ok(ApiResponse.success(response));
+        } catch (Exception e) {
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
     @DeleteMapping("/clear")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<ApiResponse<Cart>> clearCart() {
@@ -1,9 +1,10 @@
 package com.example.demo.controller;
 
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -14,13 +15,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.CheckoutQuote;
+import com.example.demo.dto.OrderSummary;
+import com.example.demo.dto.PageResponse;
 import com.example.demo.dto.PaymentVerificationRequest;
 import com.example.demo.model.Order;
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.CheckoutPricingService;
 import com.example.demo.service.OrderService;
 import com.razorpay.RazorpayException;
 
@@ -32,6 +38,9 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
     
+    @Autowired
+    private CheckoutPricingService pricingService;
+    
     @Autowired
     private UserRepository userRepository;
     
@@ -44,10 +53,11 @@ public class OrderController {
     
     @PostMapping("/create-razorpay-order")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> createRazorpayOrder(@RequestBody Map<String, Double> request) {
+    public ResponseEntity<ApiResponse<Map<String, Object>>> createRazorpayOrder() {
         try {
-            Double amount = request.get("amount");
-            Map<String, Object> razorpayOrder = orderService.createRazorpayOrder(amount);
+            User user = getCurrentUser();
+            // the amount a client sends is ignored; the cart is priced on the server
+            Map<String, Object> razorpayOrder = orderService.createRazorpayOrder(user);
             return ResponseEntity.ok(ApiResponse.success(razorpayOrder));
         } catch (RazorpayException e) {
             return ResponseEntity.ok(ApiResponse.error("Failed to create Razorpay order: " + e.getMessage()));
@@ -56,6 +66,18 @@ public class OrderController {
         }
     }
     
+    // Current prices, stock and totals for the cart, with the lines that changed since they were added
+    @PostMapping("/quote")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ApiResponse<CheckoutQuote>> quote() {
+        try {
+            User user = getCurrentUser();
+            return ResponseEntity.ok(ApiResponse.success(pricingService.quoteCart(user)));
+        } catch (Exception e) {
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
     @PostMapping("/verify-payment")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<ApiResponse<Order>> verifyPayment(@RequestBody PaymentVerificationRequest request) {
@@ -72,10 +94,12 @@ public class OrderController {
     
     @GetMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<ApiResponse<List<Order>>> getUserOrders() {
+    public ResponseEntity<ApiResponse<PageResponse<OrderSummary>>> getUserOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         try {
             User user = getCurrentUser();
-            List<Order> orders = orderService.getUserOrders(user);
+            PageResponse<OrderSummary> orders = orderService.getUserOrders(user, cursor, size);
             return ResponseEntity.ok(ApiResponse.success(orders));
         } catch (Exception e) {
             return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
@@ -108,9 +132,14 @@ public class OrderController {
     
     @GetMapping("/admin/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<List<Order>>> getAllOrders() {
+    public ResponseEntity<ApiResponse<PageResponse<OrderSummary>>> getAllOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         try {
-            List<Order> orders = orderService.getAllOrders();
+            PageResponse<OrderSummary> orders = orderService.getAllOrders(status, from, to, cursor, size);
             return ResponseEntity.ok(ApiResponse.success(orders));
         } catch (Exception e) {
             return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
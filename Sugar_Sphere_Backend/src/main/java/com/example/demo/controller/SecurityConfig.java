@@ -5,6 +5,7 @@ import java.util.Arrays;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -61,6 +62,7 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/sweets/**").permitAll() // Allow public access to view sweets
+                .requestMatchers(HttpMethod.GET, "/api/images/**").permitAll() // Product images are public
                 .requestMatchers("/api/admin/create-admin").permitAll() // Allow creating first admin (remove this after creating admin)
                 .anyRequest().authenticated()
             )
@@ -1,9 +1,13 @@
 package com.example.demo.controller;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -13,14 +17,31 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
+import com.example.demo.dto.FlashPurchaseStatus;
+import com.example.demo.dto.FlashSaleStatus;
+import com.example.demo.dto.PageResponse;
+import com.example.demo.dto.PopularSweet;
+import com.example.demo.dto.Suggestion;
+import com.example.demo.dto.SweetImportReport;
+import com.example.demo.dto.SweetCard;
+import com.example.demo.dto.SweetFacets;
 import com.example.demo.dto.SweetRequest;
+import com.example.demo.dto.SweetSearchResponse;
 import com.example.demo.model.Sweet;
+import com.example.demo.service.ImageStoreService;
+import com.example.demo.service.SweetCatalogCache;
+import com.example.demo.service.SweetCatalogCache.EncodedCatalog;
+import com.example.demo.service.SweetImportService;
 import com.example.demo.service.SweetService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 @RestController
@@ -31,27 +52,113 @@ public class SweetController {
     @Autowired
     private SweetService sweetService;
     
+    @Autowired
+    private SweetImportService sweetImportService;
+    
+    @Autowired
+    private SweetCatalogCache catalogCache;
+    
+    @Autowired
+    private ImageStoreService imageStore;
+    
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Sweet> createSweet(@Valid @RequestBody SweetRequest request) {
         return ResponseEntity.ok(sweetService.createSweet(request));
     }
     
+    // Streams NDJSON (default) or CSV with a header row; see SweetImportService for the upsert rules
+    @PostMapping(value = "/import", consumes = { "application/x-ndjson", "application/json", "text/csv", "text/plain" })
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SweetImportReport> importSweets(
+            HttpServletRequest request,
+            @RequestParam(required = false) Integer batchSize) throws IOException {
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.toLowerCase().contains("csv")) {
+            return ResponseEntity.ok(sweetImportService.importCsv(request.getInputStream(), batchSize));
+        }
+        return ResponseEntity.ok(sweetImportService.importNdjson(request.getInputStream(), batchSize));
+    }
+    
+    // Serves the pre-encoded catalog snapshot; repeat clients get a 304 via If-None-Match
     @GetMapping
-    public ResponseEntity<List<Sweet>> getAllSweets() {
-        List<Sweet> sweets = sweetService.getAllSweets();
-        System.out.println("=== GET /api/sweets ===");
-        System.out.println("Total sweets: " + sweets.size());
-        if (!sweets.isEmpty()) {
-            Sweet first = sweets.get(0);
-            System.out.println("Sample sweet - ID: " + first.getId() + 
-                             ", Name: " + first.getName() + 
-                             ", Price: " + first.getPrice() + 
-                             ", Quantity: " + first.getQuantity());
-        } else {
-            System.out.println("WARNING: No sweets found in database!");
+    public ResponseEntity<byte[]> getAllSweets(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
+        EncodedCatalog catalog = catalogCache.encoded();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? catalog.getGzipEtag() : catalog.getEtag();
+        
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(catalog.getGzip());
+        }
+        return response.body(catalog.getJson());
+    }
+    
+    // RFC 9110 Accept-Encoding: gzip (or *) with a non-zero q-value; an explicit gzip entry wins over *
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
         }
-        return ResponseEntity.ok(sweets);
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.length() > 2 && Character.toLowerCase(param.charAt(0)) == 'q' && param.charAt(1) == '=') {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return q > 0;
+            }
+            if (coding.equals("*")) {
+                wildcard = q > 0;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+    
+    @GetMapping("/cards")
+    public ResponseEntity<PageResponse<SweetCard>> getCatalogPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false, defaultValue = "id") String sort) {
+        return ResponseEntity.ok(sweetService.getCatalogPage(cursor, size, sort));
+    }
+    
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(sweetService.suggest(prefix, limit));
+    }
+    
+    @GetMapping("/top")
+    public ResponseEntity<List<PopularSweet>> getTopSellers(
+            @RequestParam(required = false, defaultValue = "24h") String window,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(sweetService.getTopSellers(window, limit));
+    }
+    
+    @GetMapping("/facets")
+    public ResponseEntity<SweetFacets> getFacets() {
+        return ResponseEntity.ok(sweetService.getFacets());
     }
     
     @GetMapping("/{id}")
@@ -59,13 +166,34 @@ public class SweetController {
         return ResponseEntity.ok(sweetService.getSweetById(id));
     }
     
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<Map<String, Object>> getAvailability(@PathVariable String id) {
+        return ResponseEntity.ok(sweetService.getAvailability(id));
+    }
+    
     @GetMapping("/search")
     public ResponseEntity<List<Sweet>> searchSweets(
             @RequestParam(required = false) String searchTerm,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) Double minPrice,
-            @RequestParam(required = false) Double maxPrice) {
-        return ResponseEntity.ok(sweetService.searchSweets(searchTerm, category, minPrice, maxPrice));
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String sort) {
+        return ResponseEntity.ok(sweetService.searchSweets(searchTerm, category, minPrice, maxPrice, inStock, sort));
+    }
+    
+    @GetMapping("/search/cards")
+    public ResponseEntity<SweetSearchResponse> searchCatalogPage(
+            @RequestParam(required = false) String searchTerm,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false, defaultValue = "id") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(sweetService.searchCatalog(searchTerm, category, minPrice, maxPrice,
+                inStock, sort, cursor, size));
     }
     
     @PutMapping("/{id}")
@@ -94,6 +222,49 @@ public class SweetController {
         return ResponseEntity.ok(sweetService.restockSweet(id, quantity));
     }
     
+    @PostMapping(value = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Sweet> uploadImage(@PathVariable String id, @RequestParam("file") MultipartFile file)
+            throws IOException {
+        return ResponseEntity.ok(sweetService.attachImage(id, imageStore.ingest(file.getBytes())));
+    }
+    
+    @PostMapping(value = "/{id}/image", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Sweet> importImage(@PathVariable String id, @RequestBody Map<String, String> body)
+            throws IOException {
+        return ResponseEntity.ok(sweetService.attachImageFromUrl(id, body.get("url")));
+    }
+    
+    @GetMapping("/flash-sales")
+    public ResponseEntity<List<FlashSaleStatus>> getFlashSales() {
+        return ResponseEntity.ok(sweetService.getFlashSales());
+    }
+    
+    // Outcome of a flash-sale purchase answered with 202 and a ticket
+    @GetMapping("/flash-sale/purchases/{ticket}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<FlashPurchaseStatus> getFlashPurchase(@PathVariable String ticket) {
+        return ResponseEntity.ok(sweetService.getFlashPurchase(ticket));
+    }
+    
+    @GetMapping("/{id}/flash-sale")
+    public ResponseEntity<FlashSaleStatus> getFlashSale(@PathVariable String id) {
+        return ResponseEntity.ok(sweetService.getFlashSale(id));
+    }
+    
+    @PostMapping("/{id}/flash-sale")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<FlashSaleStatus> startFlashSale(@PathVariable String id, @RequestBody Map<String, Integer> body) {
+        return ResponseEntity.ok(sweetService.startFlashSale(id, body.get("allotment"), body.get("queueCapacity")));
+    }
+    
+    @DeleteMapping("/{id}/flash-sale")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<FlashSaleStatus> stopFlashSale(@PathVariable String id) {
+        return ResponseEntity.ok(sweetService.stopFlashSale(id));
+    }
+    
     // Test endpoint to check MongoDB connection
     @GetMapping("/test")
     public ResponseEntity<Map<String, Object>> testConnection() {
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import com.example.demo.model.Cart;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchResponse {
+    private Cart cart;
+    private List<CartOperationResult> results;
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One step of a batch cart update: "add" (quantity defaults to 1), "set" (quantity) or "remove"
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperation {
+    private String type;
+    private String productId;
+    private Integer quantity;
+}
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one batch operation; index is the operation's position in the request
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationResult {
+    private int index;
+    private String type;
+    private String productId;
+    private boolean success;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Server-side totals for a checkout; changes lists only the lines whose status is not OK
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutQuote {
+    private List<PricedLine> lines;
+    private List<PricedLine> changes;
+    private double subtotal;
+    private double shippingCost;
+    private double tax;
+    private double totalAmount;
+    private boolean purchasable;
+}
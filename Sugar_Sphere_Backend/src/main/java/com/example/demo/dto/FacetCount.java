@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FacetCount {
+    private String key;
+    private int count;
+    private int inStockCount;
+    // Bounds of a price bucket: min inclusive, max exclusive (null when open-ended)
+    private Integer minPrice;
+    private Integer maxPrice;
+}
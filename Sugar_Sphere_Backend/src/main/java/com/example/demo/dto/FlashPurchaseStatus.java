@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.Sweet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of a flash-sale purchase that outlived the request; sweet is set once it completed
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashPurchaseStatus {
+    private String ticket;
+    private State state;
+    private Sweet sweet;
+    private String message;
+
+    public enum State {
+        PENDING, COMPLETED, FAILED
+    }
+}
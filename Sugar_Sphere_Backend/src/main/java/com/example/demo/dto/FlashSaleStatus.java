@@ -0,0 +1,21 @@
+package com.example.demo.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashSaleStatus {
+    private String sweetId;
+    private String name;
+    private int allotment;
+    private int remaining;
+    private long sold;
+    private int queued;
+    private int queueCapacity;
+    private Instant startedAt;
+}
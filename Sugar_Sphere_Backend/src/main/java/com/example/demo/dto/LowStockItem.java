@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import com.example.demo.event.StockLevelEvent;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockItem {
+    private String sweetId;
+    private String name;
+    private int quantity;
+    private int threshold;
+    private StockLevelEvent.Level level;
+}
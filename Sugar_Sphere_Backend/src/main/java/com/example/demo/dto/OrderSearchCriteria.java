@@ -0,0 +1,29 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.model.User;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filters for an order listing, newest first, combined into a single
+ * MongoDB query by {@code OrderRepositoryCustom#searchSummaries}. Every
+ * filter is optional; createdFrom is inclusive and createdTo exclusive.
+ */
+@Data
+@NoArgsConstructor
+public class OrderSearchCriteria {
+    
+    private User user;
+    private String orderStatus;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    
+    // Keyset position: createdAt and _id of the last order seen
+    private LocalDateTime afterCreatedAt;
+    private String afterId;
+    
+    private Integer limit;
+}
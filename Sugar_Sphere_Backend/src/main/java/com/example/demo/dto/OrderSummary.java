@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Order list entry: no lines, address, history or payment ids; itemCount is the number of lines
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummary {
+    private String id;
+    private String orderNumber;
+    private LocalDateTime createdAt;
+    private String orderStatus;
+    private String paymentStatus;
+    private Double totalAmount;
+    private int itemCount;
+    private String userId;
+    // filled in for the admin listing only
+    private String username;
+}
@@ -0,0 +1,21 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One keyset page; nextCursor is null on the last page
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageResponse<T> {
+    private List<T> items;
+    private String nextCursor;
+    private int size;
+    
+    public static <T> PageResponse<T> of(List<T> items, String nextCursor) {
+        return new PageResponse<>(items, nextCursor, items.size());
+    }
+}
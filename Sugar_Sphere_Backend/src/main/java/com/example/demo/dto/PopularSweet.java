@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A top seller: the catalog card plus its (decayed, estimated) units sold in the window
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PopularSweet {
+    private SweetCard sweet;
+    private double units;
+}
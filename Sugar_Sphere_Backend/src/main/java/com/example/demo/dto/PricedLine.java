@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One checkout line priced from the current catalog; previousPrice is what the cart or client had
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PricedLine {
+    private String productId;
+    private String productName;
+    private int quantity;
+    private Integer previousPrice;
+    private int price;
+    private int available;
+    private long subtotal;
+    private Status status;
+
+    public enum Status {
+        OK, PRICE_CHANGED, INSUFFICIENT_STOCK, UNAVAILABLE
+    }
+}
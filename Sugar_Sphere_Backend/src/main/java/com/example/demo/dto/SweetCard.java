@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.Sweet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Lightweight catalog entry: what a listing needs, without the details text
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SweetCard {
+    private String _id;
+    private Integer id;
+    private String name;
+    private Integer price;
+    private Integer quantity;
+    private String imageUrl;
+    private String imageHash;
+    
+    public static SweetCard from(Sweet sweet) {
+        return new SweetCard(sweet.get_id(), sweet.getId(), sweet.getName(),
+                sweet.getPrice(), sweet.getQuantity(), sweet.getImageUrl(), sweet.getImageHash());
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SweetFacets {
+    private long catalogVersion;
+    private List<FacetCount> categories;
+    private List<FacetCount> priceBuckets;
+}
@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class SweetImportReport {
+    private long rows;
+    private long inserted;
+    private long updated;
+    private long failed;
+    private int batches;
+    private List<ImportRowError> errors = new ArrayList<>();
+    
+    public void reject(long row, String message) {
+        failed++;
+        errors.add(new ImportRowError(row, message));
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -8,6 +10,10 @@ import jakarta.validation.constraints.Positive;
 public class SweetRequest {
     private String id;
     
+    // MongoDB _id as written by the catalog export; on import it names the sweet ahead of id
+    @JsonProperty("_id")
+    private String mongoId;
+    
     @NotBlank(message = "Name is required")
     private String name;
     
@@ -26,6 +32,10 @@ public class SweetRequest {
     
     private String imageUrl;
     
+    // Optional low-stock level for inventory alerts
+    @Min(value = 0, message = "Reorder threshold cannot be negative")
+    private Integer reorderThreshold;
+    
     // No-args constructor
     public SweetRequest() {}
     
@@ -50,6 +60,14 @@ public class SweetRequest {
         this.id = id;
     }
     
+    public String getMongoId() {
+        return mongoId;
+    }
+    
+    public void setMongoId(String mongoId) {
+        this.mongoId = mongoId;
+    }
+    
     public String getName() {
         return name;
     }
@@ -97,4 +115,12 @@ public class SweetRequest {
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
     }
+    
+    public Integer getReorderThreshold() {
+        return reorderThreshold;
+    }
+    
+    public void setReorderThreshold(Integer reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
 }
\ No newline at end of file
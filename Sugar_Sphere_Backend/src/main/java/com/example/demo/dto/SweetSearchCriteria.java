@@ -0,0 +1,47 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filters for a catalog search, combined into a single MongoDB query by
+ * {@code SweetRepositoryCustom#search}. Every filter is optional.
+ */
+@Data
+@NoArgsConstructor
+public class SweetSearchCriteria {
+    
+    public enum SortOrder {
+        RELEVANCE, ID, PRICE_ASC, PRICE_DESC, NAME;
+        
+        public static SortOrder parse(String value, SortOrder fallback) {
+            if (value == null || value.isBlank()) {
+                return fallback;
+            }
+            try {
+                return SortOrder.valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+    
+    // Restricts results to these _ids (e.g. hits from the full-text index)
+    private List<String> ids;
+    private String category;
+    private Double minPrice;
+    private Double maxPrice;
+    private boolean inStockOnly;
+    private SortOrder sort = SortOrder.ID;
+    
+    // Keyset position: last _id seen (and its price when sorting by price)
+    private String afterId;
+    private Integer afterPrice;
+    
+    private Integer limit;
+    
+    // Fetch only the fields needed for a catalog card
+    private boolean cardsOnly;
+}
@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A page of search results with the facet counts of everything the search matched
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SweetSearchResponse {
+    private List<SweetCard> items;
+    private String nextCursor;
+    private int size;
+    private SweetFacets facets;
+    
+    public static SweetSearchResponse of(PageResponse<SweetCard> page, SweetFacets facets) {
+        return new SweetSearchResponse(page.getItems(), page.getNextCursor(), page.getSize(), facets);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.event;
+
+import java.util.Map;
+
+/**
+ * Published when a checkout hold ends without being paid (it expired or the
+ * owner replaced it). Quantities are keyed by the sweet's MongoDB _id.
+ */
+public class StockHoldReleasedEvent {
+    private final String reservationId;
+    private final Map<String, Integer> quantities;
+    
+    public StockHoldReleasedEvent(String reservationId, Map<String, Integer> quantities) {
+        this.reservationId = reservationId;
+        this.quantities = Map.copyOf(quantities);
+    }
+    
+    public String getReservationId() {
+        return reservationId;
+    }
+    
+    public Map<String, Integer> getQuantities() {
+        return quantities;
+    }
+}
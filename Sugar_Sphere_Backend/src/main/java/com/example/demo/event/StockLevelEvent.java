@@ -0,0 +1,53 @@
+package com.example.demo.event;
+
+/**
+ * Published by the inventory watcher when a sweet's stock crosses into a
+ * different level: at or below its reorder threshold (LOW), at zero (OUT), or
+ * back above the threshold (IN_STOCK).
+ */
+public class StockLevelEvent {
+    
+    public enum Level {
+        IN_STOCK, LOW, OUT
+    }
+    
+    private final String sweetId;
+    private final String name;
+    private final int quantity;
+    private final int threshold;
+    private final Level level;
+    private final Level previousLevel;
+    
+    public StockLevelEvent(String sweetId, String name, int quantity, int threshold, Level level, Level previousLevel) {
+        this.sweetId = sweetId;
+        this.name = name;
+        this.quantity = quantity;
+        this.threshold = threshold;
+        this.level = level;
+        this.previousLevel = previousLevel;
+    }
+    
+    public String getSweetId() {
+        return sweetId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getQuantity() {
+        return quantity;
+    }
+    
+    public int getThreshold() {
+        return threshold;
+    }
+    
+    public Level getLevel() {
+        return level;
+    }
+    
+    public Level getPreviousLevel() {
+        return previousLevel;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.event;
+
+import com.example.demo.model.Sweet;
+
+/**
+ * Published by the catalog cache after a sweet has been created, updated,
+ * restocked, sold or deleted. {@code previous} is null for new sweets and
+ * {@code current} is null for deleted ones.
+ */
+public class SweetChangedEvent {
+    private final long version;
+    private final Sweet previous;
+    private final Sweet current;
+    
+    public SweetChangedEvent(long version, Sweet previous, Sweet current) {
+        this.version = version;
+        this.previous = previous;
+        this.current = current;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public Sweet getPrevious() {
+        return previous;
+    }
+    
+    public Sweet getCurrent() {
+        return current;
+    }
+    
+    public boolean isRemoval() {
+        return current == null;
+    }
+    
+    public String getSweetId() {
+        return current != null ? current.get_id() : previous.get_id();
+    }
+}
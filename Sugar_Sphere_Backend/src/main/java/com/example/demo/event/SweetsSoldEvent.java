@@ -0,0 +1,19 @@
+package com.example.demo.event;
+
+import java.util.Map;
+
+/**
+ * Published after units have been sold, either through a direct purchase or a
+ * confirmed order. Quantities are keyed by the sweet's MongoDB _id.
+ */
+public class SweetsSoldEvent {
+    private final Map<String, Integer> quantities;
+    
+    public SweetsSoldEvent(Map<String, Integer> quantities) {
+        this.quantities = Map.copyOf(quantities);
+    }
+    
+    public Map<String, Integer> getQuantities() {
+        return quantities;
+    }
+}
@@ -32,6 +32,22 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(TooManyRequestsException ex) {
+        ErrorResponse error = new ErrorResponse(HttpStatus.TOO_MANY_REQUESTS.value(), ex.getMessage());
+        return new ResponseEntity<>(error, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(PurchasePendingException.class)
+    public ResponseEntity<Map<String, Object>> handlePurchasePendingException(PurchasePendingException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", HttpStatus.ACCEPTED.value());
+        body.put("message", ex.getMessage());
+        body.put("ticket", ex.getTicket());
+        body.put("statusUrl", "/api/sweets/flash-sale/purchases/" + ex.getTicket());
+        return new ResponseEntity<>(body, HttpStatus.ACCEPTED);
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ErrorResponse> handleBadCredentialsException(BadCredentialsException ex) {
         ErrorResponse error = new ErrorResponse(HttpStatus.UNAUTHORIZED.value(), "Invalid username or password");
@@ -0,0 +1,15 @@
+package com.example.demo.exception;
+
+// Accepted but not written yet: the ticket can be polled for the outcome (202, not retryable)
+public class PurchasePendingException extends RuntimeException {
+    private final String ticket;
+
+    public PurchasePendingException(String message, String ticket) {
+        super(message);
+        this.ticket = ticket;
+    }
+
+    public String getTicket() {
+        return ticket;
+    }
+}
@@ -2,15 +2,22 @@ package com.example.demo.model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @NoArgsConstructor
@@ -34,6 +41,79 @@ public class Cart {
     
     private LocalDateTime updatedAt;
     
+    // productId -> line, built on first lookup; not stored and not part of the API
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Map<String, CartItem> index;
+    
+    public void setItems(List<CartItem> items) {
+        this.items = items;
+        this.index = null;
+    }
+    
+    /*
+     * Lines are changed through the methods below, which keep the index and
+     * the totals current by applying each line's delta; calculateTotals() is
+     * only needed for a cart read from storage.
+     */
+    public CartItem findItem(String productId) {
+        return index().get(productId);
+    }
+    
+    public void addItem(CartItem item) {
+        items.add(item);
+        index().put(item.getProductId(), item);
+        adjustTotals(item.getSubtotal(), item.getQuantity());
+    }
+    
+    public void changeQuantity(CartItem item, int quantity) {
+        int previousSubtotal = item.getSubtotal();
+        int previousQuantity = item.getQuantity();
+        item.setQuantity(quantity);
+        item.calculateSubtotal();
+        adjustTotals(item.getSubtotal() - previousSubtotal, quantity - previousQuantity);
+    }
+    
+    public void changePrice(CartItem item, int price) {
+        int previousSubtotal = item.getSubtotal();
+        item.setPrice(price);
+        item.calculateSubtotal();
+        adjustTotals(item.getSubtotal() - previousSubtotal, 0);
+    }
+    
+    public CartItem removeItem(String productId) {
+        CartItem item = index().remove(productId);
+        if (item != null) {
+            items.remove(item);
+            adjustTotals(-item.getSubtotal(), -item.getQuantity());
+        }
+        return item;
+    }
+    
+    public void clearItems() {
+        items.clear();
+        index = null;
+        totalAmount = 0.0;
+        itemCount = 0;
+    }
+    
+    private Map<String, CartItem> index() {
+        if (index == null) {
+            index = new HashMap<>(Math.max(16, items.size() * 2));
+            for (CartItem item : items) {
+                index.put(item.getProductId(), item);
+            }
+        }
+        return index;
+    }
+    
+    private void adjustTotals(int amount, int count) {
+        totalAmount = (totalAmount != null ? totalAmount : 0.0) + amount;
+        itemCount = (itemCount != null ? itemCount : 0) + count;
+    }
+    
     public void calculateTotals() {
         this.totalAmount = items.stream()
             .mapToDouble(CartItem::getSubtotal)
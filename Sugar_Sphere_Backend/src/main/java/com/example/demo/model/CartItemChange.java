@@ -0,0 +1,14 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One cart line as last written (before) and as it is now (after); null on the side where it does not exist
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItemChange {
+    private CartItem before;
+    private CartItem after;
+}
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -22,6 +24,14 @@ import lombok.ToString;
 @ToString(exclude = "user")
 @EqualsAndHashCode(exclude = "user")
 @Document(collection = "orders")
+@CompoundIndexes({
+    // a user's order history, newest first, keyset tie-break on _id
+    @CompoundIndex(name = "user_createdAt_id", def = "{ 'user': 1, 'createdAt': -1, '_id': -1 }"),
+    // admin listing filtered by status
+    @CompoundIndex(name = "status_createdAt_id", def = "{ 'orderStatus': 1, 'createdAt': -1, '_id': -1 }"),
+    // admin listing, optionally by date range
+    @CompoundIndex(name = "createdAt_id", def = "{ 'createdAt': -1, '_id': -1 }")
+})
 public class Order {
 
     @Id
@@ -60,6 +70,9 @@ public class Order {
 
     private List<StatusHistory> statusHistory = new ArrayList<>();
 
+    // Per-line result of the checkout stock adjustment
+    private List<StockLineResult> stockResults = new ArrayList<>();
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
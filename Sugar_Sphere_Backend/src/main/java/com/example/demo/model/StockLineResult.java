@@ -0,0 +1,16 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of the stock adjustment for one (merged) order line
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLineResult {
+    private String sweetId;
+    private int quantity;
+    private boolean success;
+    private String message;
+}
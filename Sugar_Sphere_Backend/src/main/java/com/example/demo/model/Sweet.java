@@ -1,11 +1,24 @@
 package com.example.demo.model;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 @Document(collection = "sweets")
+@CompoundIndexes({
+    // category filter with price range / price ordering, keyset tie-break on _id
+    @CompoundIndex(name = "category_price_id", def = "{ 'category': 1, 'price': 1, '_id': 1 }"),
+    // category filter paged by _id
+    @CompoundIndex(name = "category_id", def = "{ 'category': 1, '_id': 1 }"),
+    // price range / price ordering without a category
+    @CompoundIndex(name = "price_id", def = "{ 'price': 1, '_id': 1 }")
+})
 public class Sweet {
     @Id
     private String _id;
@@ -28,9 +41,23 @@ public class Sweet {
     @Field("availableQuantity")
     private Integer quantity;
     
+    // /api/images/{imageHash} once the image is stored; an external URL until then
     @Field("image")
     private String imageUrl;
     
+    // Stock at or below this level counts as low; null falls back to app.inventory.default-reorder-threshold
+    private Integer reorderThreshold;
+    
+    // SHA-256 of the asset in the local image store (served from /api/images/{hash}); null until ingested
+    private String imageHash;
+    
+    // Set by every write path; drives incremental exports (documents written before it existed have none)
+    @Indexed
+    private LocalDateTime updatedAt;
+    
+    // $inc'ed by every write, so copies of the document order as MongoDB applied the writes; null before the first
+    private Long version;
+    
     // Default constructor
     public Sweet() {
     }
@@ -99,4 +126,41 @@ public class Sweet {
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
     }
+    
+    public Integer getReorderThreshold() {
+        return reorderThreshold;
+    }
+    
+    public void setReorderThreshold(Integer reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
+    
+    public String getImageHash() {
+        return imageHash;
+    }
+    
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    // The one clock for updatedAt, at the millisecond precision MongoDB stores, so saved and re-read copies compare equal
+    public static LocalDateTime timestamp() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
 }
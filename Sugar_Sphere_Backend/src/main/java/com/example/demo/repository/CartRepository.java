@@ -11,7 +11,7 @@ import com.example.demo.model.Cart;
 import com.example.demo.model.User;
 
 @Repository
-public interface CartRepository extends MongoRepository<Cart, String> {
+public interface CartRepository extends MongoRepository<Cart, String>, CartRepositoryCustom {
     Optional<Cart> findByUser(User user);
     Optional<Cart> findByUserId(String userId);
     void deleteByUser(User user);
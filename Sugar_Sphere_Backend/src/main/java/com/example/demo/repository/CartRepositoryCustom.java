@@ -0,0 +1,13 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import com.example.demo.model.CartItemChange;
+
+public interface CartRepositoryCustom {
+    // Applies the line changes as targeted updates in one ordered bulkWrite; false if any of them no longer matched
+    boolean applyItemChanges(String cartId, List<CartItemChange> changes);
+    
+    // Empties the cart with a single $set
+    void clearItems(String cartId);
+}
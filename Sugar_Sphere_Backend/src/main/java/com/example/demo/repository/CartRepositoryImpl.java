@@ -0,0 +1,85 @@
+package com.example.demo.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.demo.model.Cart;
+import com.example.demo.model.CartItem;
+import com.example.demo.model.CartItemChange;
+import com.mongodb.bulk.BulkWriteResult;
+
+// Custom fragment of CartRepository: line-level updates instead of rewriting the whole cart
+public class CartRepositoryImpl implements CartRepositoryCustom {
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    /*
+     * Each line becomes one small update that also moves totalAmount and
+     * itemCount by its own delta, so the totals stay right without reading
+     * the cart back. The filters make every update conditional on the line
+     * being in the state it was last written in; a writer elsewhere that got
+     * there first shows up as a short matched count instead of being
+     * overwritten.
+     */
+    @Override
+    public boolean applyItemChanges(String cartId, List<CartItemChange> changes) {
+        if (changes.isEmpty()) {
+            return true;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Cart.class);
+        for (CartItemChange change : changes) {
+            CartItem before = change.getBefore();
+            CartItem after = change.getAfter();
+            if (before == null) {
+                bulk.updateOne(
+                        new Query(Criteria.where("_id").is(cartId).and("items.productId").ne(after.getProductId())),
+                        totals(after.getSubtotal(), after.getQuantity()).push("items", after));
+            } else if (after == null) {
+                bulk.updateOne(
+                        new Query(Criteria.where("_id").is(cartId).and("items").elemMatch(line(before))),
+                        totals(-before.getSubtotal(), -before.getQuantity())
+                                .pull("items", new Document("productId", before.getProductId())));
+            } else {
+                int quantity = after.getQuantity() - before.getQuantity();
+                int subtotal = after.getSubtotal() - before.getSubtotal();
+                Update update = totals(subtotal, quantity)
+                        .inc("items.$.quantity", quantity)
+                        .inc("items.$.subtotal", subtotal);
+                if (!Objects.equals(before.getPrice(), after.getPrice())) {
+                    update.set("items.$.price", after.getPrice());
+                }
+                bulk.updateOne(
+                        new Query(Criteria.where("_id").is(cartId).and("items").elemMatch(line(before))),
+                        update);
+            }
+        }
+        BulkWriteResult result = bulk.execute();
+        return result.getMatchedCount() == changes.size();
+    }
+    
+    @Override
+    public void clearItems(String cartId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(cartId)),
+                new Update().set("items", new ArrayList<>()).set("totalAmount", 0.0).set("itemCount", 0)
+                        .currentDate("updatedAt"),
+                Cart.class);
+    }
+    
+    private static Update totals(int amount, int count) {
+        return new Update().inc("totalAmount", amount).inc("itemCount", count).currentDate("updatedAt");
+    }
+    
+    private static Criteria line(CartItem item) {
+        return Criteria.where("productId").is(item.getProductId()).and("quantity").is(item.getQuantity());
+    }
+}
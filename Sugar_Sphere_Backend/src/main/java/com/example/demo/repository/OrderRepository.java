@@ -10,7 +10,7 @@ import com.example.demo.model.Order;
 import com.example.demo.model.User;
 
 @Repository
-public interface OrderRepository extends MongoRepository<Order, String> {
+public interface OrderRepository extends MongoRepository<Order, String>, OrderRepositoryCustom {
     List<Order> findByUserOrderByCreatedAtDesc(User user);
     List<Order> findByUserIdOrderByCreatedAtDesc(String userId);
     Optional<Order> findByOrderNumber(String orderNumber);
@@ -0,0 +1,11 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import com.example.demo.dto.OrderSearchCriteria;
+import com.example.demo.dto.OrderSummary;
+
+public interface OrderRepositoryCustom {
+    // Summaries of the orders matching the criteria, newest first by (createdAt, _id); DBRefs are not resolved
+    List<OrderSummary> searchSummaries(OrderSearchCriteria criteria);
+}
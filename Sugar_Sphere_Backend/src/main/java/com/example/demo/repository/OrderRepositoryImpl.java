@@ -0,0 +1,94 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoExpression;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.example.demo.dto.OrderSearchCriteria;
+import com.example.demo.dto.OrderSummary;
+import com.example.demo.model.Order;
+import com.mongodb.DBRef;
+
+// Custom fragment of OrderRepository for keyset-paged listings
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    /*
+     * A field projection on the find: only the summary fields leave the
+     * server, the line count is computed there with $size, and the user
+     * DBRef comes back as a plain reference instead of being resolved.
+     * Equality filters come first, then the createdAt range, so one of the
+     * compound indexes on Order serves the query.
+     */
+    @Override
+    public List<OrderSummary> searchSummaries(OrderSearchCriteria criteria) {
+        List<Criteria> filters = new ArrayList<>();
+        
+        if (criteria.getUser() != null) {
+            filters.add(Criteria.where("user").is(criteria.getUser()));
+        }
+        if (criteria.getOrderStatus() != null) {
+            filters.add(Criteria.where("orderStatus").is(criteria.getOrderStatus()));
+        }
+        if (criteria.getCreatedFrom() != null || criteria.getCreatedTo() != null) {
+            Criteria createdAt = Criteria.where("createdAt");
+            if (criteria.getCreatedFrom() != null) {
+                createdAt.gte(criteria.getCreatedFrom());
+            }
+            if (criteria.getCreatedTo() != null) {
+                createdAt.lt(criteria.getCreatedTo());
+            }
+            filters.add(createdAt);
+        }
+        if (criteria.getAfterId() != null && criteria.getAfterCreatedAt() != null) {
+            ObjectId afterId = new ObjectId(criteria.getAfterId());
+            filters.add(new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(criteria.getAfterCreatedAt()),
+                    Criteria.where("createdAt").is(criteria.getAfterCreatedAt()).and("_id").lt(afterId)));
+        }
+        
+        Query query = filters.isEmpty()
+                ? new Query()
+                : new Query(new Criteria().andOperator(filters.toArray(new Criteria[0])));
+        query.with(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id")));
+        if (criteria.getLimit() != null) {
+            query.limit(criteria.getLimit());
+        }
+        query.fields().include("orderNumber", "createdAt", "orderStatus", "paymentStatus", "totalAmount", "user");
+        query.fields().project(MongoExpression.create("{ $size: { $ifNull: [ '$items', [] ] } }")).as("itemCount");
+        
+        // mapped against Order (so the user criterion becomes a DBRef), read back as raw documents
+        List<Document> rows = mongoTemplate.query(Order.class).as(Document.class).matching(query).all();
+        List<OrderSummary> summaries = new ArrayList<>(rows.size());
+        for (Document row : rows) {
+            Object user = row.get("user");
+            Number total = row.get("totalAmount", Number.class);
+            Number itemCount = row.get("itemCount", Number.class);
+            Date createdAt = row.getDate("createdAt");
+            summaries.add(new OrderSummary(
+                    row.getObjectId("_id").toHexString(),
+                    row.getString("orderNumber"),
+                    createdAt != null ? LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()) : null,
+                    row.getString("orderStatus"),
+                    row.getString("paymentStatus"),
+                    total != null ? total.doubleValue() : null,
+                    itemCount != null ? itemCount.intValue() : 0,
+                    user instanceof DBRef ? ((DBRef) user).getId().toString() : null,
+                    null));
+        }
+        return summaries;
+    }
+}
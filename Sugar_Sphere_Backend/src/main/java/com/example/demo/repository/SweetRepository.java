@@ -10,7 +10,7 @@ import org.springframework.stereotype.Repository;
 import com.example.demo.model.Sweet;
 
 @Repository
-public interface SweetRepository extends MongoRepository<Sweet, String> {
+public interface SweetRepository extends MongoRepository<Sweet, String>, SweetRepositoryCustom {
     // Note: category field might not exist in MongoDB, so this might return empty
     @Query("{ 'category': ?0 }")
     List<Sweet> findByCategory(String category);
@@ -25,11 +25,4 @@ public interface SweetRepository extends MongoRepository<Sweet, String> {
     
     @Query("{ 'price' : { $gte: ?0, $lte: ?1 } }")
     List<Sweet> findByPriceRange(Integer minPrice, Integer maxPrice);
-    
-    // Search by title (MongoDB field name) or details
-    @Query("{ $or: [ " +
-           "{ 'title': { $regex: ?0, $options: 'i' } }, " +
-           "{ 'details': { $regex: ?0, $options: 'i' } } " +
-           "] }")
-    List<Sweet> searchByNameOrCategory(String searchTerm);
 }
@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.demo.dto.SweetSearchCriteria;
+import com.example.demo.model.Sweet;
+
+public interface SweetRepositoryCustom {
+    List<Sweet> search(SweetSearchCriteria criteria);
+    
+    // Atomically takes quantity units if at least that many are available; empty otherwise
+    Optional<Sweet> decrementStock(String mongoId, int quantity);
+    
+    // One unordered bulkWrite of guarded decrements, each also expecting the given version (as last seen in
+    // the catalog), then one $in read-back; per-line updates only for lines proven untouched after a shortfall.
+    // Returns the updated documents of the lines that applied
+    Map<String, Sweet> decrementStockBatch(Map<String, Integer> quantities, Map<String, Long> versions);
+    
+    // Upserts by _id in one unordered bulkWrite; returns the error message per failed list index
+    Map<Integer, String> upsertAll(List<Sweet> sweets);
+    
+    // Atomically adds quantity units; empty if the sweet does not exist
+    Optional<Sweet> incrementStock(String mongoId, int quantity);
+    
+    // Applies the update together with the version bump and updatedAt; empty if the sweet does not exist
+    Optional<Sweet> updateFields(String mongoId, Update update);
+}
@@ -0,0 +1,227 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.demo.dto.SweetSearchCriteria;
+import com.example.demo.dto.SweetSearchCriteria.SortOrder;
+import com.example.demo.model.Sweet;
+import com.mongodb.bulk.BulkWriteError;
+
+// Custom fragment of SweetRepository for queries that need MongoTemplate
+public class SweetRepositoryImpl implements SweetRepositoryCustom {
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    // All filters go into one query so the compound indexes on Sweet can serve it
+    @Override
+    public List<Sweet> search(SweetSearchCriteria criteria) {
+        List<Criteria> filters = new ArrayList<>();
+        
+        if (criteria.getIds() != null) {
+            filters.add(Criteria.where("_id").in(criteria.getIds()));
+        }
+        if (criteria.getCategory() != null && !criteria.getCategory().isEmpty()) {
+            filters.add(Criteria.where("category").is(criteria.getCategory()));
+        }
+        if (criteria.getMinPrice() != null || criteria.getMaxPrice() != null) {
+            Criteria price = Criteria.where("price");
+            if (criteria.getMinPrice() != null) {
+                price.gte(criteria.getMinPrice());
+            }
+            if (criteria.getMaxPrice() != null) {
+                price.lte(criteria.getMaxPrice());
+            }
+            filters.add(price);
+        }
+        if (criteria.isInStockOnly()) {
+            filters.add(Criteria.where("availableQuantity").gt(0));
+        }
+        
+        SortOrder sort = criteria.getSort() != null ? criteria.getSort() : SortOrder.ID;
+        if (criteria.getAfterId() != null) {
+            filters.add(keyset(sort, new ObjectId(criteria.getAfterId()), criteria.getAfterPrice()));
+        }
+        
+        Query query = filters.isEmpty()
+                ? new Query()
+                : new Query(new Criteria().andOperator(filters.toArray(new Criteria[0])));
+        query.with(sortFor(sort));
+        if (criteria.getLimit() != null) {
+            query.limit(criteria.getLimit());
+        }
+        if (criteria.isCardsOnly()) {
+            query.fields().include("id", "title", "price", "availableQuantity", "image", "imageHash");
+        }
+        return mongoTemplate.find(query, Sweet.class);
+    }
+    
+    // Single conditional $inc: the $gte guard makes overselling impossible without a read first
+    @Override
+    public Optional<Sweet> decrementStock(String mongoId, int quantity) {
+        Query query = new Query(Criteria.where("_id").is(mongoId).and("availableQuantity").gte(quantity));
+        Update update = new Update().inc("availableQuantity", -quantity).set("updatedAt", Sweet.timestamp())
+                .inc("version", 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Sweet.class));
+    }
+    
+    /*
+     * One unordered bulkWrite of $gte-guarded $inc updates, each also guarded
+     * on the version the caller last saw, then one $in read-back. bulkWrite
+     * only reports how many updates matched, which is all a complete checkout
+     * needs. On a shortfall the versions tell the lines apart: a document
+     * still at its expected version was not touched, and when the match count
+     * equals the number of moved documents every one of them is ours. Lines
+     * proven untouched retry with a per-line findAndModify; lines that cannot
+     * be told apart are reported as not applied rather than risk taking their
+     * stock twice.
+     */
+    @Override
+    public Map<String, Sweet> decrementStockBatch(Map<String, Integer> quantities, Map<String, Long> versions) {
+        Map<String, Sweet> applied = new LinkedHashMap<>();
+        if (quantities.isEmpty()) {
+            return applied;
+        }
+        LocalDateTime now = Sweet.timestamp();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Sweet.class);
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            bulk.updateOne(
+                    new Query(Criteria.where("_id").is(line.getKey())
+                            .and("availableQuantity").gte(line.getValue())
+                            .and("version").is(versions.get(line.getKey()))),
+                    new Update().inc("availableQuantity", -line.getValue()).set("updatedAt", now).inc("version", 1));
+        }
+        int matched = bulk.execute().getMatchedCount();
+        Map<String, Sweet> stored = new LinkedHashMap<>();
+        for (Sweet sweet : mongoTemplate.find(new Query(Criteria.where("_id").in(quantities.keySet())), Sweet.class)) {
+            stored.put(sweet.get_id(), sweet);
+        }
+        if (matched == quantities.size()) {
+            applied.putAll(stored);
+            return applied;
+        }
+        
+        List<String> untouched = new ArrayList<>();
+        List<String> moved = new ArrayList<>();
+        for (String mongoId : quantities.keySet()) {
+            Sweet sweet = stored.get(mongoId);
+            if (sweet == null) {
+                continue;
+            }
+            if (Objects.equals(sweet.getVersion(), versions.get(mongoId))) {
+                untouched.add(mongoId);
+            } else {
+                moved.add(mongoId);
+            }
+        }
+        if (matched == moved.size()) {
+            for (String mongoId : moved) {
+                applied.put(mongoId, stored.get(mongoId));
+            }
+        } else if (matched == 0) {
+            untouched.addAll(moved);
+        } else {
+            System.err.println("Stock batch matched " + matched + " of " + moved.size()
+                    + " concurrently changed sweets; not retrying " + moved);
+        }
+        for (String mongoId : untouched) {
+            decrementStock(mongoId, quantities.get(mongoId)).ifPresent(sweet -> applied.put(mongoId, sweet));
+        }
+        return applied;
+    }
+    
+    @Override
+    public Map<Integer, String> upsertAll(List<Sweet> sweets) {
+        Map<Integer, String> failures = new LinkedHashMap<>();
+        if (sweets.isEmpty()) {
+            return failures;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Sweet.class);
+        for (Sweet sweet : sweets) {
+            Update update = new Update()
+                    .set("title", sweet.getName())
+                    .set("category", sweet.getCategory())
+                    .set("details", sweet.getDescription())
+                    .set("price", sweet.getPrice())
+                    .set("availableQuantity", sweet.getQuantity())
+                    .set("image", sweet.getImageUrl())
+                    .set("updatedAt", Sweet.timestamp()).inc("version", 1);
+            if (sweet.getId() != null) {
+                update.set("id", sweet.getId());
+            }
+            if (sweet.getReorderThreshold() != null) {
+                update.set("reorderThreshold", sweet.getReorderThreshold());
+            }
+            bulk.upsert(new Query(Criteria.where("_id").is(sweet.get_id())), update);
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // unordered: every other operation was still applied
+            for (BulkWriteError error : e.getErrors()) {
+                failures.put(error.getIndex(), error.getMessage());
+            }
+        }
+        return failures;
+    }
+    
+    @Override
+    public Optional<Sweet> incrementStock(String mongoId, int quantity) {
+        Query query = new Query(Criteria.where("_id").is(mongoId));
+        Update update = new Update().inc("availableQuantity", quantity).set("updatedAt", Sweet.timestamp())
+                .inc("version", 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Sweet.class));
+    }
+    
+    @Override
+    public Optional<Sweet> updateFields(String mongoId, Update update) {
+        update.set("updatedAt", Sweet.timestamp()).inc("version", 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(mongoId)), update,
+                FindAndModifyOptions.options().returnNew(true), Sweet.class));
+    }
+    
+    private Criteria keyset(SortOrder sort, ObjectId afterId, Integer afterPrice) {
+        if ((sort == SortOrder.PRICE_ASC || sort == SortOrder.PRICE_DESC) && afterPrice != null) {
+            Criteria beyondPrice = sort == SortOrder.PRICE_ASC
+                    ? Criteria.where("price").gt(afterPrice)
+                    : Criteria.where("price").lt(afterPrice);
+            return new Criteria().orOperator(
+                    beyondPrice,
+                    Criteria.where("price").is(afterPrice).and("_id").gt(afterId));
+        }
+        return Criteria.where("_id").gt(afterId);
+    }
+    
+    private Sort sortFor(SortOrder sort) {
+        switch (sort) {
+            case PRICE_ASC:
+                return Sort.by(Sort.Order.asc("price"), Sort.Order.asc("_id"));
+            case PRICE_DESC:
+                return Sort.by(Sort.Order.desc("price"), Sort.Order.asc("_id"));
+            case NAME:
+                return Sort.by(Sort.Order.asc("name"), Sort.Order.asc("_id"));
+            default:
+                // relevance is applied in memory from the index ranking
+                return Sort.by(Sort.Order.asc("_id"));
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.model.Cart;
+import com.example.demo.model.CartItem;
+import com.example.demo.model.CartItemChange;
+import com.example.demo.model.User;
+import com.example.demo.repository.CartRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory cart tier keyed by user id. Each user's cart is loaded once and
+ * then changed in memory under a per-user lock; the first change after a
+ * flush schedules a write-behind a short delay later, so a burst of clicks
+ * becomes a single write. A write only carries the lines that changed since
+ * the previous one (see {@link CartRepository#applyItemChanges}). Checkout
+ * flushes explicitly and shutdown flushes everything. Callers always get a copy, never the cached instance.
+ */
+@Component
+public class CartCache {
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartCompactionService compactionService;
+
+    @Value("${app.cart.write-behind-ms:2000}")
+    private long writeBehindMillis;
+
+    @Value("${app.cart.idle-evict-ms:600000}")
+    private long idleEvictMillis;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cart-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Cart get(User user) {
+        while (true) {
+            Entry entry = entry(user);
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                load(entry, user);
+                return copy(entry.cart);
+            }
+        }
+    }
+
+    // Applies the change under the user's lock and schedules the write
+    public Cart update(User user, Consumer<Cart> change) {
+        while (true) {
+            Entry entry = entry(user);
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                load(entry, user);
+                change.accept(entry.cart);
+                entry.cart.setUpdatedAt(LocalDateTime.now());
+                markDirty(entry);
+                return copy(entry.cart);
+            }
+        }
+    }
+
+    // Writes the user's pending changes now instead of after the delay
+    public void flush(User user) {
+        Entry entry = entries.get(user.getId());
+        if (entry != null) {
+            flush(entry);
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        writer.shutdown();
+        for (Entry entry : entries.values()) {
+            flush(entry);
+        }
+    }
+
+    // Drops carts nobody touched for a while; dirty ones are written first
+    @Scheduled(fixedDelayString = "${app.cart.evict-sweep-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictMillis;
+        for (Entry entry : entries.values()) {
+            if (entry.lastAccess < cutoff) {
+                flush(entry);
+                synchronized (entry) {
+                    if (!entry.dirty && entry.lastAccess < cutoff) {
+                        // a request that already holds this entry retries with a fresh one
+                        entry.evicted = true;
+                        entries.remove(entry.userId, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private Entry entry(User user) {
+        Entry entry = entries.computeIfAbsent(user.getId(), Entry::new);
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+
+    private void load(Entry entry, User user) {
+        if (entry.cart != null) {
+            return;
+        }
+        Cart cart = cartRepository.findByUser(user).orElse(null);
+        if (cart == null) {
+            cart = compactionService.restore(user);
+            if (cart != null) {
+                entry.cart = cart;
+                markDirty(entry);
+                return;
+            }
+            // not written until something is added
+            cart = new Cart();
+            cart.setUser(user);
+            cart.setCreatedAt(LocalDateTime.now());
+            cart.setUpdatedAt(LocalDateTime.now());
+            entry.cart = cart;
+            return;
+        }
+        // Ensure items list is never null
+        if (cart.getItems() == null) {
+            cart.setItems(new ArrayList<>());
+        }
+        cart.calculateTotals();
+        entry.cart = cart;
+        entry.written = lines(cart);
+    }
+
+    private void markDirty(Entry entry) {
+        if (entry.dirty) {
+            return;
+        }
+        entry.dirty = true;
+        if (!writer.isShutdown()) {
+            writer.schedule(() -> flush(entry), writeBehindMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Entry entry) {
+        synchronized (entry) {
+            if (!entry.dirty || entry.cart == null) {
+                return;
+            }
+            try {
+                write(entry);
+                entry.written = lines(entry.cart);
+                entry.dirty = false;
+            } catch (Exception e) {
+                // stays dirty and is retried after another delay
+                System.err.println("Could not write cart of user " + entry.userId + ": " + e.getMessage());
+                if (!writer.isShutdown()) {
+                    writer.schedule(() -> flush(entry), writeBehindMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /*
+     * Only a new cart is saved whole; after that just the lines that changed
+     * since the last write are sent. If another writer got there first, some
+     * of those updates match nothing while the rest still apply, so the
+     * stored cart is read back, this cart's pending changes are replayed on
+     * top of it and the remaining difference is written again. After a few
+     * lost races the flush fails and stays dirty rather than drop anything.
+     */
+    private void write(Entry entry) {
+        for (int attempt = 1; ; attempt++) {
+            Cart cart = entry.cart;
+            if (cart.getId() == null) {
+                if (!cart.getItems().isEmpty()) {
+                    cart.setId(cartRepository.save(copy(cart)).getId());
+                }
+                return;
+            }
+            if (cart.getItems().isEmpty()) {
+                if (!entry.written.isEmpty()) {
+                    cartRepository.clearItems(cart.getId());
+                }
+                return;
+            }
+            List<CartItemChange> changes = changes(entry);
+            if (cartRepository.applyItemChanges(cart.getId(), changes)) {
+                return;
+            }
+            Cart stored = cartRepository.findById(cart.getId()).orElse(null);
+            if (stored == null) {
+                // removed meanwhile (expired or archived): save ours as a new cart
+                cart.setId(null);
+                continue;
+            }
+            if (attempt >= MAX_WRITE_ATTEMPTS) {
+                throw new IllegalStateException("cart kept changing concurrently");
+            }
+            System.err.println("Cart of user " + entry.userId + " changed concurrently; replaying "
+                    + changes.size() + " pending line change(s)");
+            rebase(entry, stored, changes);
+        }
+    }
+
+    private static List<CartItemChange> changes(Entry entry) {
+        Cart cart = entry.cart;
+        List<CartItemChange> changes = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            CartItem before = entry.written.get(item.getProductId());
+            if (before == null || !before.getQuantity().equals(item.getQuantity())
+                    || !Objects.equals(before.getPrice(), item.getPrice())
+                    || before.getSubtotal() != item.getSubtotal()) {
+                changes.add(new CartItemChange(before, item));
+            }
+        }
+        for (CartItem before : entry.written.values()) {
+            if (cart.findItem(before.getProductId()) == null) {
+                changes.add(new CartItemChange(before, null));
+            }
+        }
+        return changes;
+    }
+
+    // The stored cart becomes the new baseline; lines this cart changed keep this cart's values
+    private static void rebase(Entry entry, Cart stored, List<CartItemChange> changes) {
+        if (stored.getItems() == null) {
+            stored.setItems(new ArrayList<>());
+        }
+        stored.calculateTotals();
+        entry.written = lines(stored);
+        Cart merged = copy(stored);
+        for (CartItemChange change : changes) {
+            CartItem after = change.getAfter();
+            if (after == null) {
+                merged.removeItem(change.getBefore().getProductId());
+                continue;
+            }
+            CartItem existing = merged.findItem(after.getProductId());
+            if (existing == null) {
+                merged.addItem(new CartItem(after.getProductId(), after.getProductName(), after.getProductImage(),
+                        after.getPrice(), after.getQuantity(), after.getSubtotal()));
+            } else {
+                if (!Objects.equals(existing.getPrice(), after.getPrice())) {
+                    merged.changePrice(existing, after.getPrice());
+                }
+                merged.changeQuantity(existing, after.getQuantity());
+            }
+        }
+        merged.setUpdatedAt(entry.cart.getUpdatedAt());
+        entry.cart = merged;
+    }
+
+    // productId -> copy of the line, as last read from or written to MongoDB
+    private static Map<String, CartItem> lines(Cart cart) {
+        Map<String, CartItem> lines = new HashMap<>();
+        for (CartItem item : copy(cart).getItems()) {
+            lines.put(item.getProductId(), item);
+        }
+        return lines;
+    }
+
+    private static Cart copy(Cart cart) {
+        Cart copy = new Cart();
+        copy.setId(cart.getId());
+        copy.setUser(cart.getUser());
+        List<CartItem> items = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            items.add(new CartItem(item.getProductId(), item.getProductName(), item.getProductImage(),
+                    item.getPrice(), item.getQuantity(), item.getSubtotal()));
+        }
+        copy.setItems(items);
+        copy.setTotalAmount(cart.getTotalAmount());
+        copy.setItemCount(cart.getItemCount());
+        copy.setCreatedAt(cart.getCreatedAt());
+        copy.setUpdatedAt(cart.getUpdatedAt());
+        return copy;
+    }
+
+    private static final class Entry {
+        private final String userId;
+        private Cart cart;
+        private Map<String, CartItem> written = new HashMap<>();
+        private boolean dirty;
+        private boolean evicted;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Entry(String userId) {
+            this.userId = userId;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.model.Cart;
+import com.example.demo.model.CartItem;
+import com.example.demo.model.User;
+import com.mongodb.DBRef;
+
+/**
+ * Keeps the carts collection down to carts that are in use. Empty carts
+ * are not written until something is added (see {@link CartCache}), empty
+ * ones left behind expire through a partial TTL index on updatedAt, and
+ * non-empty carts idle for longer than the archive age are moved to a
+ * compact archive collection, from which a returning user's cart is
+ * restored on first access.
+ */
+@Service
+public class CartCompactionService {
+
+    private static final String CARTS = "carts";
+    private static final String ARCHIVE = "carts_archive";
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.cart.empty-ttl-days:7}")
+    private long emptyTtlDays;
+
+    @Value("${app.cart.archive-after-days:30}")
+    private long archiveAfterDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            // partial: only empty carts expire; ones with items are archived instead
+            mongoTemplate.indexOps(CARTS).createIndex(new Index("updatedAt", Sort.Direction.ASC)
+                    .named("empty_cart_ttl")
+                    .expire(Duration.ofDays(emptyTtlDays))
+                    .partial(PartialIndexFilter.of(Criteria.where("itemCount").is(0))));
+            mongoTemplate.indexOps(CARTS).createIndex(new Index("updatedAt", Sort.Direction.ASC)
+                    .on("itemCount", Sort.Direction.ASC).named("idle_carts"));
+            mongoTemplate.indexOps(ARCHIVE).createIndex(new Index("userId", Sort.Direction.ASC)
+                    .named("archived_cart_user"));
+        } catch (Exception e) {
+            System.err.println("Could not ensure cart compaction indexes: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.compaction-ms:3600000}",
+            initialDelayString = "${app.cart.compaction-ms:3600000}")
+    public void compact() {
+        Date cutoff = Date.from(Instant.now().minus(Duration.ofDays(archiveAfterDays)));
+        Query idle = new Query(Criteria.where("updatedAt").lt(cutoff).and("itemCount").gt(0));
+        idle.cursorBatchSize(BATCH_SIZE);
+        long archived = 0;
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Document> carts = mongoTemplate.stream(idle, Document.class, CARTS)) {
+            for (Document cart : (Iterable<Document>) carts::iterator) {
+                batch.add(cart);
+                if (batch.size() == BATCH_SIZE) {
+                    archived += archive(batch, cutoff);
+                    batch.clear();
+                }
+            }
+            archived += archive(batch, cutoff);
+        } catch (Exception e) {
+            System.err.println("Cart compaction failed: " + e.getMessage());
+        }
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " carts idle since " + cutoff);
+        }
+    }
+
+    // The latest archived cart of a returning user; every archived cart of the user leaves the archive
+    public Cart restore(User user) {
+        Query byUser = new Query(Criteria.where("userId").is(user.getId()));
+        Document archived = mongoTemplate.findOne(Query.of(byUser).with(Sort.by(Sort.Direction.DESC, "updatedAt")),
+                Document.class, ARCHIVE);
+        if (archived == null) {
+            return null;
+        }
+        mongoTemplate.remove(byUser, ARCHIVE);
+        List<CartItem> items = new ArrayList<>();
+        List<Document> lines = archived.getList("items", Document.class);
+        if (lines != null) {
+            for (Document line : lines) {
+                items.add(mongoTemplate.getConverter().read(CartItem.class, line));
+            }
+        }
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cart.setItems(items);
+        cart.calculateTotals();
+        cart.setCreatedAt(LocalDateTime.now());
+        cart.setUpdatedAt(LocalDateTime.now());
+        System.out.println("Restored archived cart of user " + user.getId() + " (" + items.size() + " lines)");
+        return cart;
+    }
+
+    private long archive(List<Document> carts, Date cutoff) {
+        if (carts.isEmpty()) {
+            return 0;
+        }
+        // the user reference is stored as a plain id; lines are kept as they were
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ARCHIVE);
+        List<Object> ids = new ArrayList<>(carts.size());
+        Date now = new Date();
+        for (Document cart : carts) {
+            Object user = cart.get("user");
+            Document compact = new Document("_id", cart.get("_id"))
+                    .append("userId", user instanceof DBRef ? ((DBRef) user).getId().toString() : null)
+                    .append("items", cart.get("items"))
+                    .append("itemCount", cart.get("itemCount"))
+                    .append("totalAmount", cart.get("totalAmount"))
+                    .append("updatedAt", cart.get("updatedAt"))
+                    .append("archivedAt", now);
+            bulk.replaceOne(new Query(Criteria.where("_id").is(cart.get("_id"))), compact,
+                    FindAndReplaceOptions.options().upsert());
+            ids.add(cart.get("_id"));
+        }
+        bulk.execute();
+        // a cart touched since it was read stays live, and its archive copy is dropped again
+        long removed = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids).and("updatedAt").lt(cutoff)),
+                CARTS).getDeletedCount();
+        if (removed < ids.size()) {
+            Query stillLive = new Query(Criteria.where("_id").in(ids));
+            stillLive.fields().include("_id");
+            List<Object> liveIds = new ArrayList<>();
+            for (Document live : mongoTemplate.find(stillLive, Document.class, CARTS)) {
+                liveIds.add(live.get("_id"));
+            }
+            if (!liveIds.isEmpty()) {
+                mongoTemplate.remove(new Query(Criteria.where("_id").in(liveIds)), ARCHIVE);
+            }
+        }
+        return removed;
+    }
+}
@@ -1,127 +1,206 @@
 package com.example.demo.service;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.dto.CartBatchResponse;
+import com.example.demo.dto.CartOperation;
+import com.example.demo.dto.CartOperationResult;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.model.Cart;
 import com.example.demo.model.CartItem;
 import com.example.demo.model.Sweet;
 import com.example.demo.model.User;
-import com.example.demo.repository.CartRepository;
 import com.example.demo.repository.SweetRepository;
 
 @Service
 public class CartService {
 
+    private static final int MAX_BATCH_OPERATIONS = 100;
+
     @Autowired
-    private CartRepository cartRepository;
+    private CartCache cartCache;
 
     @Autowired
     private SweetRepository sweetRepository;
 
-    public Cart getCartByUser(User user) {
-        Optional<Cart> cartOpt = cartRepository.findByUser(user);
-        Cart cart;
-        if (cartOpt.isPresent()) {
-            cart = cartOpt.get();
-            // Ensure items list is never null
-            if (cart.getItems() == null) {
-                cart.setItems(new java.util.ArrayList<>());
-            }
-            cart.calculateTotals();
-            return cart;
-        }
+    @Autowired
+    private SweetIdResolver sweetIdResolver;
 
-        cart = new Cart();
-        cart.setUser(user);
-        cart.setCreatedAt(LocalDateTime.now());
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+    public Cart getCartByUser(User user) {
+        return cartCache.get(user);
     }
 
     public Cart addToCart(User user, String sweetId, Integer quantity) {
-        Cart cart = getCartByUser(user);
-
-        // Try to parse as Integer (numeric id) first, if fails use as MongoDB _id
-        Sweet sweet;
-        String mongoId;
-        try {
-            Integer numericId = Integer.parseInt(sweetId);
-            sweet = sweetRepository.findByNumericId(numericId)
-                .orElseThrow(() -> new RuntimeException("Sweet not found"));
-            // Get MongoDB _id from the found sweet
-            mongoId = sweet.get_id() != null ? sweet.get_id() : sweetId;
-        } catch (NumberFormatException e) {
-            // sweetId is already a MongoDB _id
-            sweet = sweetRepository.findById(sweetId)
-                .orElseThrow(() -> new RuntimeException("Sweet not found"));
-            // Use the _id from the sweet, or fallback to sweetId
-            mongoId = sweet.get_id() != null ? sweet.get_id() : sweetId;
-        }
-        
-        // Final fallback - if mongoId is still null, use sweetId
-        final String finalMongoId = (mongoId != null) ? mongoId : sweetId;
-
-        Optional<CartItem> existingItem = cart.getItems().stream()
-            .filter(item -> item.getProductId().equals(finalMongoId))
-            .findFirst();
-
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-            item.calculateSubtotal();
-        } else {
-            CartItem newItem = new CartItem();
-            newItem.setProductId(finalMongoId); // Use MongoDB _id for consistency
-            newItem.setProductName(sweet.getName());
-            newItem.setProductImage(sweet.getImageUrl());
-            newItem.setPrice(sweet.getPrice());
-            newItem.setQuantity(quantity);
-            newItem.calculateSubtotal();
-            cart.getItems().add(newItem);
-        }
-
-        cart.calculateTotals();
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        // Numeric id or MongoDB _id, resolved in memory to a single findById
+        String mongoId = sweetIdResolver.resolve(sweetId)
+            .orElseThrow(() -> new RuntimeException("Sweet not found"));
+        Sweet sweet = sweetRepository.findById(mongoId)
+            .orElseThrow(() -> new RuntimeException("Sweet not found"));
+        final String finalMongoId = sweet.get_id() != null ? sweet.get_id() : mongoId;
+
+        return cartCache.update(user, cart -> {
+            addLine(cart, sweet, finalMongoId, quantity);
+        });
     }
 
     public Cart updateCartItem(User user, String sweetId, Integer quantity) {
-        Cart cart = getCartByUser(user);
-
         if (quantity < 1) {
             throw new RuntimeException("Quantity must be at least 1");
         }
 
-        CartItem item = cart.getItems().stream()
-            .filter(i -> i.getProductId().equals(sweetId))
-            .findFirst()
-            .orElseThrow(() -> new RuntimeException("Item not found in cart"));
-
-        item.setQuantity(quantity);
-        item.calculateSubtotal();
-
-        cart.calculateTotals();
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        return cartCache.update(user, cart -> {
+            CartItem item = cart.findItem(sweetId);
+            if (item == null) {
+                throw new RuntimeException("Item not found in cart");
+            }
+            cart.changeQuantity(item, quantity);
+        });
     }
 
     public Cart removeFromCart(User user, String sweetId) {
-        Cart cart = getCartByUser(user);
-        cart.getItems().removeIf(item -> item.getProductId().equals(sweetId));
-        cart.calculateTotals();
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        return cartCache.update(user, cart -> {
+            cart.removeItem(sweetId);
+        });
     }
 
     public Cart clearCart(User user) {
-        Cart cart = getCartByUser(user);
-        cart.getItems().clear();
-        cart.calculateTotals();
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        return cartCache.update(user, Cart::clearItems);
+    }
+
+    /*
+     * Applies the operations in order to one cart under a single cache
+     * update, so the batch costs one lookup of the sweets it adds (a single
+     * $in) and one cart write. A failing operation is reported and skipped;
+     * the others still apply.
+     */
+    public CartBatchResponse applyBatch(User user, List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new BadRequestException("At least one cart operation is required");
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new BadRequestException("At most " + MAX_BATCH_OPERATIONS + " cart operations per batch");
+        }
+
+        // reference as sent -> _id, for every operation that names a sweet we know of
+        Map<String, String> mongoIds = new HashMap<>();
+        Set<String> toLoad = new HashSet<>();
+        for (CartOperation operation : operations) {
+            if (operation != null && operation.getProductId() != null) {
+                sweetIdResolver.resolve(operation.getProductId()).ifPresent(mongoId -> {
+                    mongoIds.put(operation.getProductId(), mongoId);
+                    if ("add".equalsIgnoreCase(operation.getType())) {
+                        toLoad.add(mongoId);
+                    }
+                });
+            }
+        }
+        Map<String, Sweet> sweets = new HashMap<>();
+        for (Sweet sweet : sweetRepository.findAllById(toLoad)) {
+            sweets.put(sweet.get_id(), sweet);
+        }
+
+        List<CartOperationResult> results = new ArrayList<>(operations.size());
+        Cart cart = cartCache.update(user, current -> {
+            results.clear();
+            for (int i = 0; i < operations.size(); i++) {
+                CartOperation operation = operations.get(i);
+                CartOperationResult result = new CartOperationResult(i,
+                        operation != null ? operation.getType() : null,
+                        operation != null ? operation.getProductId() : null, true, null);
+                try {
+                    apply(current, operation, mongoIds, sweets);
+                } catch (RuntimeException e) {
+                    result.setSuccess(false);
+                    result.setMessage(e.getMessage());
+                }
+                results.add(result);
+            }
+        });
+        return new CartBatchResponse(cart, results);
+    }
+
+    // Moves lines to current catalog prices (productId -> price), e.g. after checkout repricing
+    public Cart reprice(User user, Map<String, Integer> prices) {
+        return cartCache.update(user, cart -> {
+            for (Map.Entry<String, Integer> price : prices.entrySet()) {
+                CartItem item = cart.findItem(price.getKey());
+                if (item != null) {
+                    cart.changePrice(item, price.getValue());
+                }
+            }
+        });
+    }
+
+    // Writes pending cart changes to MongoDB without waiting for the write-behind delay
+    public void flush(User user) {
+        cartCache.flush(user);
+    }
+
+    private void apply(Cart cart, CartOperation operation, Map<String, String> mongoIds, Map<String, Sweet> sweets) {
+        if (operation == null || operation.getType() == null) {
+            throw new BadRequestException("Operation type is required");
+        }
+        if (operation.getProductId() == null) {
+            throw new BadRequestException("Product ID is required");
+        }
+        // lines are keyed by _id; an unresolvable reference can still match a line by its raw value
+        String productId = mongoIds.getOrDefault(operation.getProductId(), operation.getProductId());
+        switch (operation.getType().toLowerCase()) {
+            case "add": {
+                int quantity = operation.getQuantity() != null ? operation.getQuantity() : 1;
+                if (quantity < 1) {
+                    throw new BadRequestException("Quantity must be at least 1");
+                }
+                Sweet sweet = sweets.get(productId);
+                if (sweet == null) {
+                    throw new ResourceNotFoundException("Sweet not found");
+                }
+                addLine(cart, sweet, productId, quantity);
+                break;
+            }
+            case "set": {
+                if (operation.getQuantity() == null || operation.getQuantity() < 1) {
+                    throw new BadRequestException("Quantity must be at least 1");
+                }
+                CartItem item = cart.findItem(productId);
+                if (item == null) {
+                    throw new ResourceNotFoundException("Item not found in cart");
+                }
+                cart.changeQuantity(item, operation.getQuantity());
+                break;
+            }
+            case "remove":
+                if (cart.removeItem(productId) == null) {
+                    throw new ResourceNotFoundException("Item not found in cart");
+                }
+                break;
+            default:
+                throw new BadRequestException("Unknown cart operation: " + operation.getType());
+        }
+    }
+
+    private static void addLine(Cart cart, Sweet sweet, String mongoId, int quantity) {
+        CartItem existingItem = cart.findItem(mongoId);
+        if (existingItem != null) {
+            cart.changeQuantity(existingItem, existingItem.getQuantity() + quantity);
+        } else {
+            CartItem newItem = new CartItem();
+            newItem.setProductId(mongoId); // Use MongoDB _id for consistency
+            newItem.setProductName(sweet.getName());
+            newItem.setProductImage(sweet.getImageUrl());
+            newItem.setPrice(sweet.getPrice());
+            newItem.setQuantity(quantity);
+            newItem.calculateSubtotal();
+            cart.addItem(newItem);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.CheckoutQuote;
+import com.example.demo.dto.PricedLine;
+import com.example.demo.dto.PricedLine.Status;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.model.Cart;
+import com.example.demo.model.CartItem;
+import com.example.demo.model.OrderItem;
+import com.example.demo.model.Sweet;
+import com.example.demo.model.User;
+
+/**
+ * Prices a checkout from the current catalog instead of the prices a cart
+ * line captured when it was added or the totals a client sends. Every line
+ * is checked against one catalog snapshot, so pricing a cart of any size
+ * costs no database round trip; totals are summed in whole rupees and tax is
+ * rounded once at the end.
+ */
+@Service
+public class CheckoutPricingService {
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private SweetIdResolver sweetIdResolver;
+
+    @Autowired
+    private CartService cartService;
+
+    @Value("${app.checkout.tax-rate:0.18}")
+    private double taxRate;
+
+    @Value("${app.checkout.shipping-cost:0}")
+    private double shippingCost;
+
+    // Prices the user's cart and moves its lines to the current prices
+    public CheckoutQuote quoteCart(User user) {
+        Cart cart = cartService.getCartByUser(user);
+        List<PricedLine> lines = new ArrayList<>(cart.getItems().size());
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        for (CartItem item : cart.getItems()) {
+            lines.add(price(snapshot, item.getProductId(), item.getProductName(), item.getPrice(),
+                    item.getQuantity() != null ? item.getQuantity() : 0));
+        }
+        CheckoutQuote quote = quote(lines);
+
+        Map<String, Integer> repriced = new HashMap<>();
+        for (PricedLine line : quote.getChanges()) {
+            if (line.getStatus() != Status.UNAVAILABLE && line.getPreviousPrice() != null
+                    && line.getPreviousPrice() != line.getPrice()) {
+                repriced.put(line.getProductId(), line.getPrice());
+            }
+        }
+        if (!repriced.isEmpty()) {
+            cartService.reprice(user, repriced);
+        }
+        return quote;
+    }
+
+    // Prices order lines, ignoring any prices they carry
+    public CheckoutQuote quoteItems(List<OrderItem> items) {
+        List<PricedLine> lines = new ArrayList<>(items.size());
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        for (OrderItem item : items) {
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new BadRequestException("Quantity must be at least 1");
+            }
+            Integer previous = item.getPrice() != null ? (int) Math.round(item.getPrice()) : null;
+            lines.add(price(snapshot, item.getSweetId(), item.getSweetName(), previous,
+                    item.getQuantity() != null ? item.getQuantity() : 0));
+        }
+        return quote(lines);
+    }
+
+    // Why the quote cannot be paid for, for error messages; null when it can
+    public static String describeProblems(CheckoutQuote quote) {
+        if (quote.isPurchasable()) {
+            return null;
+        }
+        if (quote.getLines().isEmpty()) {
+            return "Cart is empty";
+        }
+        List<String> problems = new ArrayList<>();
+        for (PricedLine line : quote.getChanges()) {
+            if (line.getStatus() == Status.UNAVAILABLE) {
+                problems.add((line.getProductName() != null ? line.getProductName() : line.getProductId())
+                        + " is no longer available");
+            } else if (line.getStatus() == Status.INSUFFICIENT_STOCK) {
+                problems.add(line.getAvailable() <= 0 ? line.getProductName() + " is out of stock"
+                        : "Only " + line.getAvailable() + " left of " + line.getProductName());
+            }
+        }
+        return String.join("; ", problems);
+    }
+
+    private PricedLine price(SweetCatalogCache.CatalogSnapshot snapshot, String ref, String name,
+            Integer previousPrice, int quantity) {
+        String mongoId = sweetIdResolver.resolve(ref).orElse(null);
+        Sweet sweet = mongoId != null ? snapshot.get(mongoId) : null;
+        if (sweet == null || sweet.getPrice() == null) {
+            return new PricedLine(ref, name, quantity, previousPrice, 0, 0, 0, Status.UNAVAILABLE);
+        }
+        int price = sweet.getPrice();
+        int available = sweet.getQuantity() != null ? sweet.getQuantity() : 0;
+        Status status = available < quantity ? Status.INSUFFICIENT_STOCK
+                : previousPrice != null && previousPrice != price ? Status.PRICE_CHANGED
+                : Status.OK;
+        return new PricedLine(mongoId, sweet.getName(), quantity, previousPrice, price, available,
+                (long) price * quantity, status);
+    }
+
+    private CheckoutQuote quote(List<PricedLine> lines) {
+        long subtotal = 0;
+        boolean purchasable = !lines.isEmpty();
+        List<PricedLine> changes = new ArrayList<>();
+        for (PricedLine line : lines) {
+            subtotal += line.getSubtotal();
+            if (line.getStatus() != Status.OK) {
+                changes.add(line);
+                purchasable &= line.getStatus() == Status.PRICE_CHANGED;
+            }
+        }
+        double tax = Math.round(subtotal * taxRate * 100) / 100.0;
+        double total = subtotal + shippingCost + tax;
+        return new CheckoutQuote(lines, changes, subtotal, shippingCost, tax, total, purchasable);
+    }
+}
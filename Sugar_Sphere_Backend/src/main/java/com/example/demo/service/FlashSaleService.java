@@ -0,0 +1,336 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.FlashPurchaseStatus;
+import com.example.demo.dto.FlashSaleStatus;
+import com.example.demo.event.StockHoldReleasedEvent;
+import com.example.demo.event.SweetsSoldEvent;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.exception.PurchasePendingException;
+import com.example.demo.exception.TooManyRequestsException;
+import com.example.demo.model.Sweet;
+import com.example.demo.repository.SweetRepository;
+
+/**
+ * Admission control for sweets on a flash sale. A lock-free counter hands out
+ * the allotment; admitted purchases wait in a bounded FIFO queue that one
+ * worker thread per sale drains, coalescing whatever is queued into a single
+ * guarded $inc. Once the allotment is gone requests are turned away in memory
+ * and never reach MongoDB.
+ */
+@Service
+public class FlashSaleService {
+
+    private static final int MAX_BATCH = 256;
+    private static final long TICKET_TTL_MILLIS = 10 * 60 * 1000L;
+
+    @Autowired
+    private SweetRepository sweetRepository;
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private StockReservationService reservationService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.flash-sale.queue-capacity:1024}")
+    private int defaultQueueCapacity;
+
+    @Value("${app.flash-sale.wait-ms:5000}")
+    private long waitMillis;
+
+    private final Map<String, FlashSale> sales = new ConcurrentHashMap<>();
+    // ticket -> purchase that timed out on the request thread
+    private final Map<String, PendingPurchase> tickets = new ConcurrentHashMap<>();
+
+    public boolean isActive(String mongoId) {
+        return sales.containsKey(mongoId);
+    }
+
+    // The allotment is capped at what is currently available for sale
+    public FlashSaleStatus enable(String mongoId, Integer allotment, Integer queueCapacity) {
+        if (allotment == null || allotment <= 0) {
+            throw new BadRequestException("Allotment must be a positive number");
+        }
+        if (queueCapacity != null && queueCapacity <= 0) {
+            throw new BadRequestException("Queue capacity must be a positive number");
+        }
+        Sweet sweet = catalogCache.snapshot().get(mongoId);
+        if (sweet == null) {
+            throw new BadRequestException("Sweet not found with id: " + mongoId);
+        }
+        int units = Math.min(allotment, reservationService.available(mongoId));
+        FlashSale sale = new FlashSale(mongoId, units, queueCapacity != null ? queueCapacity : defaultQueueCapacity);
+        FlashSale previous = sales.putIfAbsent(mongoId, sale);
+        if (previous != null) {
+            throw new ConflictException("A flash sale is already running for " + sweet.getName());
+        }
+        sale.worker.start();
+        System.out.println("Flash sale started for " + sweet.getName() + " with " + units + " units");
+        return status(sale);
+    }
+
+    // New requests take the normal path at once; already admitted ones are still written
+    public FlashSaleStatus disable(String mongoId) {
+        FlashSale sale = sales.remove(mongoId);
+        if (sale == null) {
+            return null;
+        }
+        // under the sale's lock: no purchase can be queued after the worker was told to finish
+        synchronized (sale) {
+            sale.running = false;
+        }
+        return status(sale);
+    }
+
+    public FlashSaleStatus getStatus(String mongoId) {
+        FlashSale sale = sales.get(mongoId);
+        return sale != null ? status(sale) : null;
+    }
+
+    public List<FlashSaleStatus> getActiveSales() {
+        List<FlashSaleStatus> statuses = new ArrayList<>();
+        for (FlashSale sale : sales.values()) {
+            statuses.add(status(sale));
+        }
+        return statuses;
+    }
+
+    // One unit through the admission counter and the queue; empty when no sale is running
+    public Optional<Sweet> purchase(String mongoId) {
+        FlashSale sale = sales.get(mongoId);
+        if (sale == null) {
+            return Optional.empty();
+        }
+        if (!sale.tryAcquire(1)) {
+            throw new ConflictException(name(mongoId) + " is sold out");
+        }
+        PendingPurchase purchase = new PendingPurchase(1);
+        synchronized (sale) {
+            if (!sale.running) {
+                // disabled meanwhile: the normal purchase path takes over
+                sale.refund(1);
+                return Optional.empty();
+            }
+            if (!sale.queue.offer(purchase)) {
+                sale.refund(1);
+                throw new TooManyRequestsException("Too many requests for " + name(mongoId) + ", please try again");
+            }
+        }
+        try {
+            return Optional.of(purchase.result.get(waitMillis, TimeUnit.MILLISECONDS));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            // still queued: the worker will apply it, so the client polls instead of retrying
+            String ticket = UUID.randomUUID().toString();
+            tickets.put(ticket, purchase);
+            throw new PurchasePendingException("Your purchase of " + name(mongoId) + " is still being processed", ticket);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the purchase");
+        }
+    }
+
+    public FlashPurchaseStatus getPurchaseStatus(String ticket) {
+        PendingPurchase purchase = tickets.get(ticket);
+        if (purchase == null) {
+            return null;
+        }
+        if (!purchase.result.isDone()) {
+            return new FlashPurchaseStatus(ticket, FlashPurchaseStatus.State.PENDING, null, null);
+        }
+        try {
+            return new FlashPurchaseStatus(ticket, FlashPurchaseStatus.State.COMPLETED, purchase.result.join(), null);
+        } catch (CompletionException | CancellationException e) {
+            String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            return new FlashPurchaseStatus(ticket, FlashPurchaseStatus.State.FAILED, null, message);
+        }
+    }
+
+    // Outcomes of timed-out purchases are kept for a while for polling
+    @Scheduled(fixedDelay = 60000)
+    public void expireTickets() {
+        long cutoff = System.currentTimeMillis() - TICKET_TTL_MILLIS;
+        tickets.values().removeIf(purchase -> purchase.result.isDone() && purchase.doneAt < cutoff);
+    }
+
+    // Checkout lines for sweets on sale draw from the allotment too; all or nothing
+    public void admit(Map<String, Integer> lines) {
+        Map<String, Integer> acquired = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> line : lines.entrySet()) {
+            FlashSale sale = sales.get(line.getKey());
+            if (sale == null) {
+                continue;
+            }
+            if (!sale.tryAcquire(line.getValue())) {
+                refund(acquired);
+                throw new ConflictException(name(line.getKey()) + " is sold out");
+            }
+            acquired.put(line.getKey(), line.getValue());
+        }
+    }
+
+    public void refund(Map<String, Integer> lines) {
+        for (Map.Entry<String, Integer> line : lines.entrySet()) {
+            FlashSale sale = sales.get(line.getKey());
+            if (sale != null) {
+                sale.refund(line.getValue());
+            }
+        }
+    }
+
+    // An unpaid checkout gives its admitted units back
+    @EventListener
+    public void onHoldReleased(StockHoldReleasedEvent event) {
+        refund(event.getQuantities());
+    }
+
+    private String name(String mongoId) {
+        Sweet sweet = catalogCache.snapshot().get(mongoId);
+        return sweet != null ? sweet.getName() : mongoId;
+    }
+
+    private FlashSaleStatus status(FlashSale sale) {
+        return new FlashSaleStatus(sale.mongoId, name(sale.mongoId), sale.allotment, sale.remaining.get(),
+                sale.sold.get(), sale.queue.size(), sale.queueCapacity, sale.startedAt);
+    }
+
+    // Drains the queue until the sale is disabled and nothing is left to write
+    private void drain(FlashSale sale) {
+        List<PendingPurchase> batch = new ArrayList<>();
+        while (sale.running || !sale.queue.isEmpty()) {
+            try {
+                PendingPurchase first = sale.queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                sale.queue.drainTo(batch, MAX_BATCH - 1);
+                write(sale, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Flash sale write failed for " + sale.mongoId + ": " + e.getMessage());
+                for (PendingPurchase purchase : batch) {
+                    sale.refund(purchase.units);
+                    purchase.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(FlashSale sale, List<PendingPurchase> batch) {
+        int units = 0;
+        for (PendingPurchase purchase : batch) {
+            units += purchase.units;
+        }
+        Optional<Sweet> updated = sweetRepository.decrementStock(sale.mongoId, units);
+        if (updated.isPresent()) {
+            Sweet sweet = updated.get();
+            catalogCache.put(sweet);
+            sale.sold.addAndGet(units);
+            eventPublisher.publishEvent(new SweetsSoldEvent(Map.of(sale.mongoId, units)));
+            for (PendingPurchase purchase : batch) {
+                purchase.result.complete(sweet);
+            }
+            return;
+        }
+        // stock ran out underneath the allotment: serve the queue in order while it lasts
+        for (PendingPurchase purchase : batch) {
+            Optional<Sweet> single = sweetRepository.decrementStock(sale.mongoId, purchase.units);
+            if (single.isPresent()) {
+                catalogCache.put(single.get());
+                sale.sold.addAndGet(purchase.units);
+                eventPublisher.publishEvent(new SweetsSoldEvent(Map.of(sale.mongoId, purchase.units)));
+                purchase.result.complete(single.get());
+            } else {
+                sale.remaining.set(0);
+                purchase.result.completeExceptionally(new ConflictException(name(sale.mongoId) + " is sold out"));
+            }
+        }
+    }
+
+    private final class FlashSale {
+        private final String mongoId;
+        private final int allotment;
+        private final int queueCapacity;
+        private final AtomicInteger remaining;
+        private final AtomicLong sold = new AtomicLong();
+        private final ArrayBlockingQueue<PendingPurchase> queue;
+        private final Instant startedAt = Instant.now();
+        private final Thread worker;
+        private volatile boolean running = true;
+
+        private FlashSale(String mongoId, int allotment, int queueCapacity) {
+            this.mongoId = mongoId;
+            this.allotment = allotment;
+            this.queueCapacity = queueCapacity;
+            this.remaining = new AtomicInteger(allotment);
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.worker = new Thread(() -> drain(this), "flash-sale-" + mongoId);
+            this.worker.setDaemon(true);
+        }
+
+        private boolean tryAcquire(int units) {
+            while (true) {
+                int left = remaining.get();
+                if (left < units) {
+                    return false;
+                }
+                if (remaining.compareAndSet(left, left - units)) {
+                    return true;
+                }
+            }
+        }
+
+        private void refund(int units) {
+            remaining.updateAndGet(left -> Math.min(allotment, left + units));
+        }
+    }
+
+    private static final class PendingPurchase {
+        private final int units;
+        private final CompletableFuture<Sweet> result = new CompletableFuture<>();
+        private volatile long doneAt;
+
+        private PendingPurchase(int units) {
+            this.units = units;
+            result.whenComplete((sweet, error) -> doneAt = System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: level 0 has {@code wheelSize} slots of one tick,
+ * every further level has slots as wide as the whole level below it. Adding
+ * or cancelling a timer is O(1); a timer on a coarse level cascades down one
+ * level each time its slot comes up. Not thread-safe, callers synchronize.
+ */
+final class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<Timer<T>>[]> levels = new ArrayList<>();
+    private final List<Long> levelTicks = new ArrayList<>();
+    private long currentTime;
+    private int size;
+
+    HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMillis - startMillis % tickMillis;
+        addLevel();
+    }
+
+    // Schedules the payload; deadlines round up to the next tick, so timers never fire early
+    Timer<T> schedule(T payload, long deadlineMillis) {
+        long rounded = (deadlineMillis + tickMillis - 1) / tickMillis * tickMillis;
+        Timer<T> timer = new Timer<>(payload, Math.max(rounded, currentTime));
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    // Moves the clock to now, handing every timer that came due to the consumer
+    void advance(long nowMillis, Consumer<T> expired) {
+        if (size == 0) {
+            currentTime = Math.max(currentTime, nowMillis - nowMillis % tickMillis);
+            return;
+        }
+        fireDue(expired);
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            // coarse levels first, so cascaded timers land in slots drained this same tick
+            for (int level = levels.size() - 1; level >= 0; level--) {
+                long levelTick = levelTicks.get(level);
+                if (currentTime % levelTick == 0) {
+                    drain(level, (int) ((currentTime / levelTick) % wheelSize), expired);
+                }
+            }
+            if (size == 0) {
+                currentTime = nowMillis - nowMillis % tickMillis;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void fireDue(Consumer<T> expired) {
+        drain(0, (int) ((currentTime / tickMillis) % wheelSize), expired);
+    }
+
+    private void drain(int level, int slot, Consumer<T> expired) {
+        List<Timer<T>> timers = levels.get(level)[slot];
+        if (timers.isEmpty()) {
+            return;
+        }
+        levels.get(level)[slot] = new ArrayList<>();
+        for (Timer<T> timer : timers) {
+            if (timer.cancelled) {
+                continue;
+            }
+            if (timer.deadline <= currentTime) {
+                size--;
+                timer.cancelled = true;
+                expired.accept(timer.payload);
+            } else {
+                place(timer);
+            }
+        }
+    }
+
+    // Smallest level whose window still reaches the deadline
+    private void place(Timer<T> timer) {
+        int level = 0;
+        while (true) {
+            if (level == levels.size()) {
+                addLevel();
+            }
+            long levelTick = levelTicks.get(level);
+            long distance = timer.deadline / levelTick - currentTime / levelTick;
+            if (distance < wheelSize) {
+                levels.get(level)[(int) ((timer.deadline / levelTick) % wheelSize)].add(timer);
+                timer.wheel = this;
+                return;
+            }
+            level++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addLevel() {
+        List<Timer<T>>[] slots = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        long levelTick = levelTicks.isEmpty() ? tickMillis : levelTicks.get(levelTicks.size() - 1) * wheelSize;
+        levels.add(slots);
+        levelTicks.add(levelTick);
+    }
+
+    static final class Timer<T> {
+        private final T payload;
+        private final long deadline;
+        private boolean cancelled;
+        private HierarchicalTimingWheel<T> wheel;
+
+        private Timer(T payload, long deadline) {
+            this.payload = payload;
+            this.deadline = deadline;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+
+        // Lazy: the entry is dropped when its slot is next drained
+        void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                wheel.size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.demo.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.exception.BadRequestException;
+
+/**
+ * Content-addressed image store on local disk. An asset is named by the
+ * SHA-256 of its bytes, so identical uploads share one file and a stored file
+ * never changes. Thumbnails for the configured sizes are rendered once at
+ * ingest, next to the original: {@code <dir>/<ab>/<hash>} and
+ * {@code <dir>/<ab>/<hash>_<size>}.
+ */
+@Service
+public class ImageStoreService {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String URL_PREFIX = "/api/images/";
+
+    @Value("${app.images.dir:data/images}")
+    private String directory;
+
+    // Bounding box (px) of each pre-rendered thumbnail
+    @Value("${app.images.thumbnail-sizes:96,240,480}")
+    private int[] thumbnailSizes;
+
+    @Value("${app.images.max-bytes:10485760}")
+    private long maxBytes;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    // hash -> content type, sniffed once per asset
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    public String ingest(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            throw new BadRequestException("Image is empty");
+        }
+        if (bytes.length > maxBytes) {
+            throw new BadRequestException("Image is larger than " + maxBytes + " bytes");
+        }
+        String contentType = sniff(bytes);
+        if (contentType == null) {
+            throw new BadRequestException("Unsupported image format");
+        }
+        String hash = sha256(bytes);
+        Path original = path(hash, 0);
+        if (!Files.exists(original)) {
+            Files.createDirectories(original.getParent());
+            write(original, bytes);
+            renderThumbnails(hash, bytes, contentType);
+        }
+        contentTypes.put(hash, contentType);
+        return hash;
+    }
+
+    // Downloads an external image (bounded in size and time) and ingests it
+    public String ingestUrl(String url) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid image URL: " + url);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            throw new BadRequestException("Image URL must be http or https: " + url);
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + url);
+        }
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new BadRequestException("Image download failed with HTTP " + response.statusCode() + ": " + url);
+            }
+            byte[] bytes = body.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes + 1));
+            return ingest(bytes);
+        }
+    }
+
+    // Path the asset is served from; what a sweet's imageUrl holds once its image is stored
+    public static String urlFor(String hash) {
+        return URL_PREFIX + hash;
+    }
+
+    // The hash named by a urlFor path (or one of its thumbnails); null for external URLs
+    public static String hashOf(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        String rest = url.substring(URL_PREFIX.length());
+        int slash = rest.indexOf('/');
+        String hash = slash >= 0 ? rest.substring(0, slash) : rest;
+        return isHash(hash) ? hash : null;
+    }
+
+    public static boolean isHash(String value) {
+        if (value == null || value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Smallest stored rendition at least as large as asked for; the original past the largest size
+    public Path resolve(String hash, Integer size) {
+        if (!isHash(hash)) {
+            return null;
+        }
+        if (size != null) {
+            int[] sizes = sortedSizes();
+            for (int candidate : sizes) {
+                if (candidate >= size) {
+                    Path thumbnail = path(hash, candidate);
+                    if (Files.exists(thumbnail)) {
+                        return thumbnail;
+                    }
+                    break;
+                }
+            }
+        }
+        Path original = path(hash, 0);
+        return Files.exists(original) ? original : null;
+    }
+
+    public String contentType(String hash, Path file) throws IOException {
+        if (!file.getFileName().toString().equals(hash)) {
+            // thumbnails are always re-encoded, see renderThumbnails
+            return file.getFileName().toString().endsWith(".png") ? "image/png" : "image/jpeg";
+        }
+        String known = contentTypes.get(hash);
+        if (known != null) {
+            return known;
+        }
+        byte[] head = new byte[16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read = in.readNBytes(head, 0, head.length);
+            head = Arrays.copyOf(head, read);
+        }
+        String sniffed = sniff(head);
+        String contentType = sniffed != null ? sniffed : "application/octet-stream";
+        contentTypes.put(hash, contentType);
+        return contentType;
+    }
+
+    public int[] getThumbnailSizes() {
+        return sortedSizes();
+    }
+
+    private void renderThumbnails(String hash, byte[] bytes, String contentType) {
+        BufferedImage source;
+        try {
+            source = ImageIO.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            source = null;
+        }
+        if (source == null) {
+            // e.g. WebP: no decoder in the JDK, the original is served for every size
+            System.err.println("No thumbnails for image " + hash + " (" + contentType + "): cannot decode");
+            return;
+        }
+        boolean alpha = source.getColorModel().hasAlpha();
+        for (int size : sortedSizes()) {
+            int longest = Math.max(source.getWidth(), source.getHeight());
+            if (longest <= size) {
+                // never upscale; requests for this size get the original
+                break;
+            }
+            double scale = (double) size / longest;
+            int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+            BufferedImage thumbnail = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = thumbnail.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(thumbnail, alpha ? "png" : "jpg", out);
+                Path target = path(hash, size);
+                write(alpha ? target.resolveSibling(target.getFileName() + ".png") : target, out.toByteArray());
+            } catch (IOException e) {
+                System.err.println("Could not write " + size + "px thumbnail of " + hash + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Written to a temp file and moved into place, so readers never see a partial asset
+    private static void write(Path target, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".upload", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path path(String hash, int size) {
+        Path dir = Paths.get(directory).resolve(hash.substring(0, 2));
+        if (size <= 0) {
+            return dir.resolve(hash);
+        }
+        Path jpeg = dir.resolve(hash + "_" + size);
+        Path png = dir.resolve(hash + "_" + size + ".png");
+        return Files.exists(png) ? png : jpeg;
+    }
+
+    private int[] sortedSizes() {
+        int[] sizes = thumbnailSizes.clone();
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
+    private static String sniff(byte[] head) {
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (head.length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return "image/png";
+        }
+        if (head.length >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8') {
+            return "image/gif";
+        }
+        if (head.length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.dto.LowStockItem;
+import com.example.demo.event.StockLevelEvent;
+import com.example.demo.event.StockLevelEvent.Level;
+import com.example.demo.event.SweetChangedEvent;
+import com.example.demo.model.Sweet;
+
+/**
+ * Tracks the stock level of every sweet against its reorder threshold. Every
+ * stock change already reaches the catalog cache, so the watcher follows
+ * {@link SweetChangedEvent} instead of polling the collection, and only
+ * reports transitions: a {@link StockLevelEvent} for listeners in the
+ * application and an SSE message for connected admins.
+ */
+@Service
+public class InventoryWatcher {
+
+    private static final long SSE_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.inventory.default-reorder-threshold:5}")
+    private int defaultThreshold;
+
+    // sweet _id -> current level, for sweets at or below their threshold only
+    private final Map<String, Level> levels = new HashMap<>();
+    private volatile boolean built;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    // SSE writes happen off the thread that changed the stock (often a checkout request)
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-sse");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public List<LowStockItem> getLowStock() {
+        ensureBuilt();
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        List<LowStockItem> items = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Level> entry : levels.entrySet()) {
+                Sweet sweet = snapshot.get(entry.getKey());
+                if (sweet != null) {
+                    items.add(new LowStockItem(sweet.get_id(), sweet.getName(), quantity(sweet), threshold(sweet),
+                            entry.getValue()));
+                }
+            }
+        }
+        items.sort(Comparator.comparingInt(LowStockItem::getQuantity).thenComparing(LowStockItem::getName,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return items;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            // current state first, so a fresh dashboard does not wait for the next change
+            emitter.send(SseEmitter.event().name("snapshot").data(getLowStock()));
+        } catch (IOException e) {
+            emitters.remove(emitter);
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onSweetChanged(SweetChangedEvent event) {
+        StockLevelEvent transition;
+        synchronized (this) {
+            if (!built) {
+                // the published snapshot already contains this change
+                rebuild(catalogCache.snapshot());
+                return;
+            }
+            transition = update(event.getSweetId(), event.getCurrent());
+        }
+        if (transition != null) {
+            eventPublisher.publishEvent(transition);
+        }
+    }
+
+    @EventListener
+    public void onStockLevel(StockLevelEvent event) {
+        if (emitters.isEmpty()) {
+            return;
+        }
+        String name = event.getLevel() == Level.OUT ? "out-of-stock"
+                : event.getLevel() == Level.LOW ? "low-stock" : "restocked";
+        LowStockItem item = new LowStockItem(event.getSweetId(), event.getName(), event.getQuantity(),
+                event.getThreshold(), event.getLevel());
+        notifier.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name(name).data(item));
+                } catch (Exception e) {
+                    emitters.remove(emitter);
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        // fetched before taking our monitor: loading the catalog may wait on the cache's monitor
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        synchronized (this) {
+            if (!built) {
+                rebuild(snapshot);
+            }
+        }
+    }
+
+    private void rebuild(SweetCatalogCache.CatalogSnapshot snapshot) {
+        levels.clear();
+        for (Sweet sweet : snapshot.getSweets()) {
+            Level level = level(sweet);
+            if (level != Level.IN_STOCK) {
+                levels.put(sweet.get_id(), level);
+            }
+        }
+        built = true;
+    }
+
+    // The transition to announce, or null when the level did not change
+    private StockLevelEvent update(String mongoId, Sweet current) {
+        Level previous = levels.getOrDefault(mongoId, Level.IN_STOCK);
+        if (current == null) {
+            levels.remove(mongoId);
+            return null;
+        }
+        Level level = level(current);
+        if (level == previous) {
+            return null;
+        }
+        if (level == Level.IN_STOCK) {
+            levels.remove(mongoId);
+        } else {
+            levels.put(mongoId, level);
+        }
+        return new StockLevelEvent(mongoId, current.getName(), quantity(current), threshold(current), level, previous);
+    }
+
+    private Level level(Sweet sweet) {
+        int quantity = quantity(sweet);
+        if (quantity <= 0) {
+            return Level.OUT;
+        }
+        return quantity <= threshold(sweet) ? Level.LOW : Level.IN_STOCK;
+    }
+
+    private int threshold(Sweet sweet) {
+        return sweet.getReorderThreshold() != null ? sweet.getReorderThreshold() : defaultThreshold;
+    }
+
+    private static int quantity(Sweet sweet) {
+        return sweet.getQuantity() != null ? sweet.getQuantity() : 0;
+    }
+}
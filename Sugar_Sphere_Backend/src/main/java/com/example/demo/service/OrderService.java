@@ -1,23 +1,42 @@
 package com.example.demo.service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.bson.types.ObjectId;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.dto.CheckoutQuote;
+import com.example.demo.dto.OrderSearchCriteria;
+import com.example.demo.dto.OrderSummary;
+import com.example.demo.dto.PageResponse;
 import com.example.demo.dto.PaymentVerificationRequest;
+import com.example.demo.dto.PricedLine;
+import com.example.demo.event.SweetsSoldEvent;
+import com.example.demo.exception.BadRequestException;
 import com.example.demo.model.Cart;
+import com.example.demo.model.CartItem;
 import com.example.demo.model.Order;
 import com.example.demo.model.OrderItem;
 import com.example.demo.model.StatusHistory;
+import com.example.demo.model.StockLineResult;
 import com.example.demo.model.Sweet;
 import com.example.demo.model.User;
-import com.example.demo.repository.CartRepository;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.SweetRepository;
 import com.razorpay.RazorpayClient;
@@ -27,15 +46,39 @@ import com.razorpay.Utils;
 @Service
 public class OrderService {
     
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    
     @Autowired
     private OrderRepository orderRepository;
     
     @Autowired
-    private CartRepository cartRepository;
+    private CartService cartService;
     
     @Autowired
     private SweetRepository sweetRepository;
     
+    @Autowired
+    private SweetCatalogCache catalogCache;
+    
+    @Autowired
+    private SweetIdResolver sweetIdResolver;
+    
+    @Autowired
+    private StockReservationService reservationService;
+    
+    @Autowired
+    private FlashSaleService flashSaleService;
+    
+    @Autowired
+    private CheckoutPricingService pricingService;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Value("${razorpay.key.id}")
     private String razorpayKeyId;
     
@@ -51,22 +94,55 @@ public class OrderService {
         return razorpayClient;
     }
     
-    public Map<String, Object> createRazorpayOrder(Double amount) throws RazorpayException {
+    // The amount charged is the server's quote for the cart, not a client-supplied total
+    public Map<String, Object> createRazorpayOrder(User user) throws RazorpayException {
+        CheckoutQuote quote = pricingService.quoteCart(user);
+        String problems = CheckoutPricingService.describeProblems(quote);
+        if (problems != null) {
+            throw new BadRequestException(problems);
+        }
+        
+        // The hold takes exactly the quoted lines, so what is held is what is charged
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (PricedLine line : quote.getLines()) {
+            if (line.getQuantity() > 0) {
+                lines.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+            }
+        }
+        
         RazorpayClient client = getRazorpayClient();
         
         JSONObject orderRequest = new JSONObject();
-        orderRequest.put("amount", amount * 100);
+        orderRequest.put("amount", Math.round(quote.getTotalAmount() * 100));
         orderRequest.put("currency", "INR");
         orderRequest.put("receipt", "order_" + System.currentTimeMillis());
         orderRequest.put("payment_capture", 1);
         
         com.razorpay.Order razorpayOrder = client.orders.create(orderRequest);
         
+        // Hold the cart's stock until the payment is verified or the hold expires
+        StockReservationService.Hold hold = null;
+        if (!lines.isEmpty()) {
+            // a repeated checkout replaces the previous hold, so give its flash-sale units back first
+            reservationService.releaseFor(user.getId());
+            flashSaleService.admit(lines);
+            try {
+                hold = reservationService.reserve(razorpayOrder.get("id"), user.getId(), lines, quote);
+            } catch (RuntimeException e) {
+                flashSaleService.refund(lines);
+                throw e;
+            }
+        }
+        
         Map<String, Object> response = new HashMap<>();
         response.put("orderId", razorpayOrder.get("id"));
         response.put("amount", razorpayOrder.get("amount"));
         response.put("currency", razorpayOrder.get("currency"));
         response.put("key", razorpayKeyId);
+        if (hold != null) {
+            response.put("reservationExpiresAt", hold.getExpiresAt().toString());
+        }
+        response.put("quote", quote);
         
         return response;
     }
@@ -89,15 +165,64 @@ public class OrderService {
             throw new RuntimeException("Invalid payment signature");
         }
         
+        // Lines and prices come from the quote the stock hold was taken with, which is what Razorpay
+        // charged; only once the hold has expired is the cart priced again. Nothing the client sends is trusted
+        StockReservationService.Hold hold = reservationService.get(orderId);
+        CheckoutQuote quote;
+        if (hold != null) {
+            quote = hold.getQuote();
+        } else {
+            Map<String, Integer> quantities = cartQuantities(user);
+            if (quantities.isEmpty()) {
+                throw new BadRequestException("No items found for payment " + orderId);
+            }
+            List<OrderItem> requested = new ArrayList<>(quantities.size());
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                OrderItem item = new OrderItem();
+                item.setSweetId(line.getKey());
+                item.setQuantity(line.getValue());
+                requested.add(item);
+            }
+            quote = pricingService.quoteItems(requested);
+            
+            // a re-quote must total exactly what Razorpay charged; otherwise the payment goes back
+            long quotedPaise = Math.round(quote.getTotalAmount() * 100);
+            Object charged = getRazorpayClient().orders.fetch(orderId).get("amount");
+            long chargedPaise = charged instanceof Number ? ((Number) charged).longValue()
+                    : Long.parseLong(String.valueOf(charged));
+            if (quotedPaise != chargedPaise) {
+                refundPayment(paymentId);
+                throw new BadRequestException("Your reservation expired and the order total changed from "
+                        + chargedPaise / 100.0 + " to " + quote.getTotalAmount() + "; payment " + paymentId
+                        + " has been refunded");
+            }
+        }
+        
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        List<OrderItem> items = new ArrayList<>(quote.getLines().size());
+        for (PricedLine line : quote.getLines()) {
+            if (line.getQuantity() <= 0) {
+                continue;
+            }
+            Sweet sweet = snapshot.get(line.getProductId());
+            OrderItem item = new OrderItem();
+            item.setSweetId(line.getProductId());
+            item.setSweetName(line.getProductName());
+            item.setQuantity(line.getQuantity());
+            item.setPrice((double) line.getPrice());
+            item.setImageUrl(sweet != null ? sweet.getImageUrl() : null);
+            items.add(item);
+        }
+        
         Order order = new Order();
         order.setUser(user);
         order.generateOrderNumber();
-        order.setItems(request.getItems());
+        order.setItems(items);
         order.setShippingAddress(request.getShippingAddress());
-        order.setSubtotal(request.getSubtotal());
-        order.setShippingCost(request.getShippingCost());
-        order.setTax(request.getTax());
-        order.setTotalAmount(request.getTotalAmount());
+        order.setSubtotal(quote.getSubtotal());
+        order.setShippingCost(quote.getShippingCost());
+        order.setTax(quote.getTax());
+        order.setTotalAmount(quote.getTotalAmount());
         order.setPaymentMethod("razorpay");
         order.setPaymentStatus("completed");
         order.setRazorpayOrderId(orderId);
@@ -113,6 +238,19 @@ public class OrderService {
         statusHistory.setMessage("Order confirmed and payment received");
         order.getStatusHistory().add(statusHistory);
         
+        try {
+            order.setStockResults(adjustStock(order.getItems()));
+        } catch (Exception e) {
+            // Log error but don't fail the order
+            System.err.println("Error updating stock for order " + order.getOrderNumber() + ": " + e.getMessage());
+        }
+        // Stock has left MongoDB (or could not), either way the hold is done
+        reservationService.commit(orderId);
+        long unfulfilled = order.getStockResults().stream().filter(result -> !result.isSuccess()).count();
+        if (unfulfilled > 0) {
+            order.addStatus("confirmed", unfulfilled + " item(s) could not be reserved from stock");
+        }
+        
         Order savedOrder = orderRepository.save(order);
         
         // Log order creation for debugging
@@ -123,58 +261,89 @@ public class OrderService {
         System.out.println("Items Count: " + savedOrder.getItems().size());
         System.out.println("Order saved to MongoDB collection: orders");
         
-        // Update stock for each item in the order
-        for (OrderItem item : savedOrder.getItems()) {
-            try {
-                // Try to find sweet by MongoDB _id first, then by numeric id
-                Sweet sweet = null;
-                String sweetId = item.getSweetId();
-                
-                try {
-                    // Try as MongoDB _id
-                    sweet = sweetRepository.findById(sweetId)
-                        .orElse(null);
-                    
-                    // If not found, try as numeric id
-                    if (sweet == null) {
-                        try {
-                            Integer numericId = Integer.parseInt(sweetId);
-                            sweet = sweetRepository.findByNumericId(numericId)
-                                .orElse(null);
-                        } catch (NumberFormatException e) {
-                            // Not a numeric ID, continue
-                        }
-                    }
-                    
-                    if (sweet != null && sweet.getQuantity() != null) {
-                        int newQuantity = sweet.getQuantity() - item.getQuantity();
-                        if (newQuantity < 0) {
-                            newQuantity = 0;
-                        }
-                        sweet.setQuantity(newQuantity);
-                        sweetRepository.save(sweet);
-                    }
-                } catch (Exception e) {
-                    // Log error but don't fail the order
-                    System.err.println("Error updating stock for sweet " + sweetId + ": " + e.getMessage());
-                }
-            } catch (Exception e) {
-                System.err.println("Error processing order item: " + e.getMessage());
+        // Paid: empty the cart now rather than after the write-behind delay
+        cartService.clearCart(user);
+        cartService.flush(user);
+        
+        return savedOrder;
+    }
+    
+    private void refundPayment(String paymentId) {
+        try {
+            getRazorpayClient().payments.refund(paymentId);
+        } catch (RazorpayException e) {
+            System.err.println("Refund of payment " + paymentId + " failed: " + e.getMessage());
+            throw new BadRequestException("The order total no longer matches payment " + paymentId
+                    + " and the refund could not be started; please contact support");
+        }
+    }
+    
+    private Map<String, Integer> cartQuantities(User user) {
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        Cart cart = cartService.getCartByUser(user);
+        if (cart.getItems() == null) {
+            return lines;
+        }
+        for (CartItem item : cart.getItems()) {
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                continue;
             }
+            sweetIdResolver.resolve(item.getProductId())
+                    .ifPresent(mongoId -> lines.merge(mongoId, item.getQuantity(), Integer::sum));
+        }
+        return lines;
+    }
+    
+    // Merges lines per sweet and takes each from stock with one guarded update
+    private List<StockLineResult> adjustStock(List<OrderItem> items) {
+        List<StockLineResult> results = new ArrayList<>();
+        Map<String, Integer> merged = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                continue;
+            }
+            // Numeric id or MongoDB _id, resolved in memory
+            String mongoId = sweetIdResolver.resolve(item.getSweetId()).orElse(null);
+            if (mongoId == null) {
+                results.add(new StockLineResult(item.getSweetId(), item.getQuantity(), false, "Sweet not found"));
+                continue;
+            }
+            merged.merge(mongoId, item.getQuantity(), Integer::sum);
         }
         
-        Cart cart = cartRepository.findByUser(user).orElse(null);
-        if (cart != null) {
-            cart.getItems().clear();
-            cart.calculateTotals();
-            cartRepository.save(cart);
+        // One bulk of conditional $inc updates; a line only applies if the full quantity is available
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        Map<String, Long> versions = new HashMap<>();
+        for (String mongoId : merged.keySet()) {
+            Sweet cached = snapshot.get(mongoId);
+            versions.put(mongoId, cached != null ? cached.getVersion() : null);
+        }
+        Map<String, Sweet> applied = sweetRepository.decrementStockBatch(merged, versions);
+        Map<String, Integer> sold = new HashMap<>();
+        for (Map.Entry<String, Integer> line : merged.entrySet()) {
+            Sweet sweet = applied.get(line.getKey());
+            if (sweet != null) {
+                catalogCache.put(sweet);
+                sold.put(line.getKey(), line.getValue());
+                results.add(new StockLineResult(line.getKey(), line.getValue(), true, null));
+            } else {
+                System.err.println("Insufficient stock for sweet " + line.getKey()
+                    + " (requested " + line.getValue() + ")");
+                results.add(new StockLineResult(line.getKey(), line.getValue(), false, "Insufficient stock"));
+            }
         }
         
-        return savedOrder;
+        if (!sold.isEmpty()) {
+            eventPublisher.publishEvent(new SweetsSoldEvent(sold));
+        }
+        return results;
     }
     
-    public List<Order> getUserOrders(User user) {
-        return orderRepository.findByUserOrderByCreatedAtDesc(user);
+    // Newest first; cursors are "<createdAt epoch millis>:<_id>" of the last order on the previous page
+    public PageResponse<OrderSummary> getUserOrders(User user, String cursor, Integer size) {
+        OrderSearchCriteria criteria = new OrderSearchCriteria();
+        criteria.setUser(user);
+        return searchOrders(criteria, cursor, size);
     }
     
     public Order getOrderById(String orderId, User user) {
@@ -212,8 +381,74 @@ public class OrderService {
         return orderRepository.save(order);
     }
     
-    public List<Order> getAllOrders() {
-        return orderRepository.findAllByOrderByCreatedAtDesc();
+    // Admin listing; usernames are looked up once per page rather than by resolving each order's user
+    public PageResponse<OrderSummary> getAllOrders(String status, LocalDateTime from, LocalDateTime to, String cursor,
+            Integer size) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        OrderSearchCriteria criteria = new OrderSearchCriteria();
+        criteria.setOrderStatus(status != null && !status.isBlank() ? status.trim().toLowerCase() : null);
+        criteria.setCreatedFrom(from);
+        criteria.setCreatedTo(to);
+        PageResponse<OrderSummary> page = searchOrders(criteria, cursor, size);
+        
+        Set<ObjectId> userIds = new HashSet<>();
+        for (OrderSummary summary : page.getItems()) {
+            if (summary.getUserId() != null && ObjectId.isValid(summary.getUserId())) {
+                userIds.add(new ObjectId(summary.getUserId()));
+            }
+        }
+        if (!userIds.isEmpty()) {
+            Query users = new Query(Criteria.where("_id").in(userIds));
+            users.fields().include("username");
+            Map<String, String> usernames = new HashMap<>();
+            for (User user : mongoTemplate.find(users, User.class)) {
+                usernames.put(user.getId(), user.getUsername());
+            }
+            for (OrderSummary summary : page.getItems()) {
+                summary.setUsername(usernames.get(summary.getUserId()));
+            }
+        }
+        return page;
+    }
+    
+    private PageResponse<OrderSummary> searchOrders(OrderSearchCriteria criteria, String cursor, Integer size) {
+        int limit = pageSize(size);
+        if (cursor != null && !cursor.isEmpty()) {
+            int sep = cursor.indexOf(':');
+            if (sep < 0 || !ObjectId.isValid(cursor.substring(sep + 1))) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+            try {
+                long millis = Long.parseLong(cursor.substring(0, sep));
+                criteria.setAfterCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+            criteria.setAfterId(cursor.substring(sep + 1));
+        }
+        // one extra row tells whether another page exists
+        criteria.setLimit(limit + 1);
+        List<OrderSummary> rows = orderRepository.searchSummaries(criteria);
+        boolean hasMore = rows.size() > limit;
+        List<OrderSummary> orders = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            OrderSummary last = orders.get(orders.size() - 1);
+            nextCursor = last.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + ":" + last.getId();
+        }
+        return PageResponse.of(orders, nextCursor);
+    }
+    
+    private static int pageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
     }
     
     public Order updateOrderStatus(String orderId, String status, String note) {
@@ -0,0 +1,281 @@
+package com.example.demo.service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.event.SweetsSoldEvent;
+
+/**
+ * Streaming popularity of sweets by units sold, one tracker per window. Each
+ * window is an exponentially decayed count-min sketch (half-life = window, or
+ * no decay for "all") plus a small top-K candidate set, so "best sellers" and
+ * "trending" are answered from memory without scanning orders. The state is
+ * snapshotted to MongoDB periodically and restored at startup.
+ */
+@Component
+public class PopularityTracker {
+
+    public static final String ALL_TIME = "all";
+    private static final String COLLECTION = "popularity_snapshots";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Windows besides "all", e.g. 1h,24h,7d; each doubles as the half-life of its counts
+    @Value("${app.popularity.windows:1h,24h,7d}")
+    private String[] windowNames;
+
+    @Value("${app.popularity.top-k:100}")
+    private int topK;
+
+    private final Map<String, DecayedTopK> windows = new LinkedHashMap<>();
+
+    // restored first: the suggestion index ranks by these counts
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void initialize() {
+        windows.clear();
+        for (String name : windowNames) {
+            Duration halfLife = parseWindow(name.trim());
+            windows.put(name.trim(), new DecayedTopK(halfLife.toMillis(), topK));
+        }
+        windows.put(ALL_TIME, new DecayedTopK(0, topK));
+        try {
+            for (Document snapshot : mongoTemplate.findAll(Document.class, COLLECTION)) {
+                DecayedTopK window = windows.get(snapshot.getString("_id"));
+                if (window != null) {
+                    window.restore(snapshot);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Could not restore popularity snapshots: " + e.getMessage());
+        }
+    }
+
+    @EventListener
+    public synchronized void onSweetsSold(SweetsSoldEvent event) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Integer> sale : event.getQuantities().entrySet()) {
+            if (sale.getValue() == null || sale.getValue() <= 0) {
+                continue;
+            }
+            for (DecayedTopK window : windows.values()) {
+                window.add(sale.getKey(), sale.getValue(), now);
+            }
+        }
+    }
+
+    // The heaviest sweets of a window with their decayed unit counts, best first
+    public synchronized List<Map.Entry<String, Double>> top(String window, int limit) {
+        DecayedTopK tracker = windows.get(window);
+        if (tracker == null) {
+            return null;
+        }
+        return tracker.top(limit, System.currentTimeMillis());
+    }
+
+    // Decayed unit count of one sweet in a window; 0 for an unknown window or a sweet never sold
+    public synchronized double estimate(String window, String sweetId) {
+        DecayedTopK tracker = windows.get(window);
+        return tracker == null ? 0 : tracker.estimate(sweetId, System.currentTimeMillis());
+    }
+
+    public synchronized List<String> getWindows() {
+        return new ArrayList<>(windows.keySet());
+    }
+
+    @Scheduled(fixedDelayString = "${app.popularity.snapshot-ms:300000}",
+            initialDelayString = "${app.popularity.snapshot-ms:300000}")
+    public void snapshot() {
+        List<Document> snapshots = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, DecayedTopK> window : windows.entrySet()) {
+                snapshots.add(window.getValue().toDocument(window.getKey()));
+            }
+        }
+        try {
+            for (Document snapshot : snapshots) {
+                mongoTemplate.save(snapshot, COLLECTION);
+            }
+        } catch (Exception e) {
+            System.err.println("Could not save popularity snapshots: " + e.getMessage());
+        }
+    }
+
+    // "90m", "24h", "7d"; a bare number means hours
+    static Duration parseWindow(String window) {
+        if (window.isEmpty()) {
+            throw new IllegalArgumentException("Empty popularity window");
+        }
+        char unit = Character.toLowerCase(window.charAt(window.length() - 1));
+        String amount = Character.isDigit(unit) ? window : window.substring(0, window.length() - 1);
+        long value = Long.parseLong(amount);
+        switch (unit) {
+            case 'm':
+                return Duration.ofMinutes(value);
+            case 'd':
+                return Duration.ofDays(value);
+            default:
+                return Duration.ofHours(value);
+        }
+    }
+
+    /**
+     * Forward-decayed count-min sketch with a top-K candidate set. Counts are
+     * stored scaled by 2^((t - landmark) / halfLife), so adding never touches
+     * old cells; reading divides the decay back out. The landmark moves forward
+     * (rescaling every cell once) before the scale factors could overflow.
+     */
+    private static final class DecayedTopK {
+        private static final int DEPTH = 4;
+        private static final int WIDTH = 1024;
+        private static final double MAX_EXPONENT = 60;
+
+        private final long halfLifeMillis;
+        private final int capacity;
+        private double[] cells = new double[DEPTH * WIDTH];
+        private final Map<String, Double> candidates = new HashMap<>();
+        private long landmark = System.currentTimeMillis();
+
+        private DecayedTopK(long halfLifeMillis, int capacity) {
+            this.halfLifeMillis = halfLifeMillis;
+            this.capacity = capacity;
+        }
+
+        private void add(String key, int units, long now) {
+            double exponent = exponent(now);
+            if (exponent > MAX_EXPONENT) {
+                rescale(now);
+                exponent = 0;
+            }
+            double weighted = units * Math.pow(2, exponent);
+
+            // conservative update: only raise the cells that hold the current minimum
+            int h1 = key.hashCode();
+            int h2 = mix(h1);
+            double estimate = Double.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, cells[index(row, h1, h2)]);
+            }
+            double updated = estimate + weighted;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(row, h1, h2);
+                if (cells[i] < updated) {
+                    cells[i] = updated;
+                }
+            }
+            offer(key, updated);
+        }
+
+        private void offer(String key, double scaled) {
+            if (candidates.containsKey(key) || candidates.size() < capacity) {
+                candidates.put(key, scaled);
+                return;
+            }
+            String weakest = null;
+            double weakestScore = Double.MAX_VALUE;
+            for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+                if (candidate.getValue() < weakestScore) {
+                    weakest = candidate.getKey();
+                    weakestScore = candidate.getValue();
+                }
+            }
+            if (scaled > weakestScore) {
+                candidates.remove(weakest);
+                candidates.put(key, scaled);
+            }
+        }
+
+        private double estimate(String key, long now) {
+            int h1 = key.hashCode();
+            int h2 = mix(h1);
+            double estimate = Double.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, cells[index(row, h1, h2)]);
+            }
+            return estimate * Math.pow(2, -exponent(now));
+        }
+
+        private List<Map.Entry<String, Double>> top(int limit, long now) {
+            double decay = Math.pow(2, -exponent(now));
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(candidates.size());
+            for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+                ranked.add(Map.entry(candidate.getKey(), candidate.getValue() * decay));
+            }
+            ranked.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+            return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+        }
+
+        private double exponent(long now) {
+            return halfLifeMillis == 0 ? 0 : (double) (now - landmark) / halfLifeMillis;
+        }
+
+        private void rescale(long now) {
+            double factor = Math.pow(2, -exponent(now));
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] *= factor;
+            }
+            candidates.replaceAll((key, value) -> value * factor);
+            landmark = now;
+        }
+
+        private int index(int row, int h1, int h2) {
+            return row * WIDTH + ((h1 + row * h2) & (WIDTH - 1));
+        }
+
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 16;
+            return h | 1;
+        }
+
+        private Document toDocument(String window) {
+            ByteBuffer buffer = ByteBuffer.allocate(cells.length * Double.BYTES);
+            buffer.asDoubleBuffer().put(cells);
+            return new Document("_id", window)
+                    .append("halfLifeMillis", halfLifeMillis)
+                    .append("landmark", landmark)
+                    .append("cells", new Binary(buffer.array()))
+                    .append("candidates", new Document(new LinkedHashMap<>(candidates)));
+        }
+
+        // Snapshots taken with another half-life or sketch shape are ignored
+        private void restore(Document snapshot) {
+            Binary binary = snapshot.get("cells", Binary.class);
+            Number halfLife = snapshot.get("halfLifeMillis", Number.class);
+            if (binary == null || halfLife == null || halfLife.longValue() != halfLifeMillis
+                    || binary.getData().length != cells.length * Double.BYTES) {
+                return;
+            }
+            ByteBuffer.wrap(binary.getData()).asDoubleBuffer().get(cells);
+            landmark = snapshot.get("landmark", Number.class).longValue();
+            candidates.clear();
+            Document stored = snapshot.get("candidates", Document.class);
+            if (stored != null) {
+                for (Map.Entry<String, Object> candidate : stored.entrySet()) {
+                    candidates.put(candidate.getKey(), ((Number) candidate.getValue()).doubleValue());
+                }
+            }
+        }
+    }
+}
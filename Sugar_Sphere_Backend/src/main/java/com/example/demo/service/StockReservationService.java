@@ -0,0 +1,184 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.CheckoutQuote;
+import com.example.demo.event.StockHoldReleasedEvent;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.model.Sweet;
+
+/**
+ * Holds stock for a checkout between Razorpay order creation and payment
+ * verification. Holds live in memory and count against the catalog snapshot,
+ * so availability is answered without a query; MongoDB is only written when a
+ * paid order commits its hold. Expiries sit in a hierarchical timing wheel
+ * that a scheduled tick advances.
+ */
+@Service
+public class StockReservationService {
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.reservations.hold-seconds:900}")
+    private long holdSeconds;
+
+    // one wheel slot per scheduled tick, so the wheel and the tick that advances it share a resolution
+    private final HierarchicalTimingWheel<String> expiries;
+
+    // reservation id (the Razorpay order id) -> hold
+    private final Map<String, Hold> holds = new HashMap<>();
+    // owner (user id) -> their current reservation id
+    private final Map<String, String> holdsByOwner = new HashMap<>();
+    // sweet _id -> units on hold across all reservations
+    private final Map<String, Integer> held = new HashMap<>();
+
+    public StockReservationService(@Value("${app.reservations.tick-ms:1000}") long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("app.reservations.tick-ms must be at least 1");
+        }
+        this.expiries = new HierarchicalTimingWheel<>(tickMillis, 64, System.currentTimeMillis());
+    }
+
+    // Units that can still be sold or reserved: stock in the catalog minus active holds
+    public int available(String mongoId) {
+        Sweet sweet = catalogCache.snapshot().get(mongoId);
+        if (sweet == null || sweet.getQuantity() == null) {
+            return 0;
+        }
+        synchronized (this) {
+            return Math.max(0, sweet.getQuantity() - held.getOrDefault(mongoId, 0));
+        }
+    }
+
+    public synchronized int held(String mongoId) {
+        return held.getOrDefault(mongoId, 0);
+    }
+
+    // All-or-nothing hold of the given units; replaces the owner's previous hold. The quote is what the
+    // customer is charged for these units and is kept with the hold for order creation (null for the
+    // momentary, ownerless hold of a direct purchase)
+    public Hold reserve(String reservationId, String ownerId, Map<String, Integer> quantities, CheckoutQuote quote) {
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        synchronized (this) {
+            releaseFor(ownerId);
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                Sweet sweet = snapshot.get(line.getKey());
+                if (sweet == null) {
+                    throw new BadRequestException("Sweet not found with id: " + line.getKey());
+                }
+                int stock = sweet.getQuantity() != null ? sweet.getQuantity() : 0;
+                int free = Math.max(0, stock - held.getOrDefault(line.getKey(), 0));
+                if (free < line.getValue()) {
+                    throw new BadRequestException(free == 0 ? sweet.getName() + " is out of stock"
+                            : "Only " + free + " left of " + sweet.getName());
+                }
+            }
+            Map<String, Integer> lines = new LinkedHashMap<>(quantities);
+            for (Map.Entry<String, Integer> line : lines.entrySet()) {
+                held.merge(line.getKey(), line.getValue(), Integer::sum);
+            }
+            long expiresAt = System.currentTimeMillis() + holdSeconds * 1000;
+            Hold hold = new Hold(reservationId, ownerId, lines, quote, Instant.ofEpochMilli(expiresAt));
+            hold.timer = expiries.schedule(reservationId, expiresAt);
+            holds.put(reservationId, hold);
+            if (ownerId != null) {
+                holdsByOwner.put(ownerId, reservationId);
+            }
+            return hold;
+        }
+    }
+
+    public synchronized Hold get(String reservationId) {
+        return holds.get(reservationId);
+    }
+
+    // Paid: the units are about to leave MongoDB stock, so the hold is simply dropped
+    public synchronized Hold commit(String reservationId) {
+        return drop(reservationId);
+    }
+
+    // Unpaid: the units go back on sale
+    public synchronized Hold release(String reservationId) {
+        Hold hold = drop(reservationId);
+        if (hold != null) {
+            eventPublisher.publishEvent(new StockHoldReleasedEvent(reservationId, hold.quantities));
+        }
+        return hold;
+    }
+
+    public synchronized Hold releaseFor(String ownerId) {
+        String reservationId = ownerId != null ? holdsByOwner.get(ownerId) : null;
+        return reservationId != null ? release(reservationId) : null;
+    }
+
+    private Hold drop(String reservationId) {
+        Hold hold = holds.remove(reservationId);
+        if (hold == null) {
+            return null;
+        }
+        hold.timer.cancel();
+        if (hold.ownerId != null) {
+            holdsByOwner.remove(hold.ownerId, reservationId);
+        }
+        for (Map.Entry<String, Integer> line : hold.quantities.entrySet()) {
+            held.computeIfPresent(line.getKey(), (id, units) -> units > line.getValue() ? units - line.getValue() : null);
+        }
+        return hold;
+    }
+
+    @Scheduled(fixedDelayString = "${app.reservations.tick-ms:1000}")
+    public synchronized void expireHolds() {
+        expiries.advance(System.currentTimeMillis(), reservationId -> {
+            if (release(reservationId) != null) {
+                System.out.println("Stock reservation expired: " + reservationId);
+            }
+        });
+    }
+
+    public static final class Hold {
+        private final String reservationId;
+        private final String ownerId;
+        private final Map<String, Integer> quantities;
+        private final CheckoutQuote quote;
+        private final Instant expiresAt;
+        private HierarchicalTimingWheel.Timer<String> timer;
+
+        private Hold(String reservationId, String ownerId, Map<String, Integer> quantities, CheckoutQuote quote,
+                Instant expiresAt) {
+            this.reservationId = reservationId;
+            this.ownerId = ownerId;
+            this.quantities = quantities;
+            this.quote = quote;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getReservationId() {
+            return reservationId;
+        }
+
+        public Map<String, Integer> getQuantities() {
+            return quantities;
+        }
+
+        public CheckoutQuote getQuote() {
+            return quote;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
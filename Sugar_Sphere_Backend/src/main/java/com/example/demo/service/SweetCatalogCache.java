@@ -0,0 +1,262 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.event.SweetChangedEvent;
+import com.example.demo.model.Sweet;
+import com.example.demo.repository.SweetRepository;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Immutable, versioned in-memory view of the sweets collection used to serve
+ * catalog reads. The snapshot is loaded once and afterwards only patched by
+ * the write paths in {@link SweetService} (and stock updates from checkout),
+ * so storefront reads never touch MongoDB. Every patch is followed by a
+ * {@link SweetChangedEvent} so derived in-memory views can follow along.
+ */
+@Component
+public class SweetCatalogCache {
+
+    @Autowired
+    private SweetRepository sweetRepository;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private volatile CatalogSnapshot snapshot;
+
+    private long version;
+
+    public CatalogSnapshot snapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    public List<Sweet> getAll() {
+        return snapshot().getSweets();
+    }
+
+    public long getVersion() {
+        return snapshot().getVersion();
+    }
+
+    // JSON body of the current snapshot, encoded at most once per version
+    public EncodedCatalog encoded() {
+        CatalogSnapshot current = snapshot();
+        EncodedCatalog encoded = current.encoded;
+        if (encoded == null) {
+            synchronized (current) {
+                encoded = current.encoded;
+                if (encoded == null) {
+                    byte[] json = jsonMapper.writeValueAsBytes(current.getSweets());
+                    encoded = new EncodedCatalog(current.getVersion(), json);
+                    current.encoded = encoded;
+                }
+            }
+        }
+        return encoded;
+    }
+
+    // Replaces (or appends) a single sweet; callers pass the document as saved
+    public synchronized void put(Sweet sweet) {
+        if (sweet == null || sweet.get_id() == null) {
+            return;
+        }
+        CatalogSnapshot current = snapshot();
+        if (isOlder(sweet, current.byId.get(sweet.get_id()))) {
+            return;
+        }
+        LinkedHashMap<String, Sweet> byId = new LinkedHashMap<>(current.byId);
+        Sweet previous = byId.put(sweet.get_id(), sweet);
+        CatalogSnapshot next = publish(byId);
+        eventPublisher.publishEvent(new SweetChangedEvent(next.getVersion(), previous, sweet));
+    }
+
+    // Same as put for many sweets, with a single copy of the snapshot
+    public synchronized void putAll(List<Sweet> sweets) {
+        CatalogSnapshot current = snapshot();
+        LinkedHashMap<String, Sweet> byId = new LinkedHashMap<>(current.byId);
+        List<Sweet> applied = new ArrayList<>(sweets.size());
+        List<Sweet> previous = new ArrayList<>(sweets.size());
+        for (Sweet sweet : sweets) {
+            if (sweet.get_id() != null && !isOlder(sweet, byId.get(sweet.get_id()))) {
+                previous.add(byId.put(sweet.get_id(), sweet));
+                applied.add(sweet);
+            }
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+        CatalogSnapshot next = publish(byId);
+        for (int i = 0; i < applied.size(); i++) {
+            eventPublisher.publishEvent(new SweetChangedEvent(next.getVersion(), previous.get(i), applied.get(i)));
+        }
+    }
+
+    // A copy MongoDB wrote before the cached one must not overwrite it in the snapshot
+    private static boolean isOlder(Sweet sweet, Sweet cached) {
+        return cached != null && cached.getVersion() != null && sweet.getVersion() != null
+                && sweet.getVersion() < cached.getVersion();
+    }
+
+    public synchronized void remove(String mongoId) {
+        CatalogSnapshot current = snapshot();
+        if (mongoId == null || !current.byId.containsKey(mongoId)) {
+            return;
+        }
+        LinkedHashMap<String, Sweet> byId = new LinkedHashMap<>(current.byId);
+        Sweet previous = byId.remove(mongoId);
+        CatalogSnapshot next = publish(byId);
+        eventPublisher.publishEvent(new SweetChangedEvent(next.getVersion(), previous, null));
+    }
+
+    // Reloads the whole collection and announces every sweet that was added, changed or removed
+    public synchronized CatalogSnapshot reload() {
+        CatalogSnapshot before = snapshot;
+        snapshot = null;
+        CatalogSnapshot after = load();
+        if (before != null) {
+            for (Sweet previous : before.getSweets()) {
+                if (after.get(previous.get_id()) == null) {
+                    eventPublisher.publishEvent(new SweetChangedEvent(after.getVersion(), previous, null));
+                }
+            }
+            for (Sweet sweet : after.getSweets()) {
+                eventPublisher.publishEvent(new SweetChangedEvent(after.getVersion(), before.get(sweet.get_id()), sweet));
+            }
+        }
+        return after;
+    }
+
+    private synchronized CatalogSnapshot load() {
+        if (snapshot != null) {
+            return snapshot;
+        }
+        LinkedHashMap<String, Sweet> byId = new LinkedHashMap<>();
+        for (Sweet sweet : sweetRepository.findAll()) {
+            if (sweet.get_id() != null) {
+                byId.put(sweet.get_id(), sweet);
+            }
+        }
+        System.out.println("Catalog snapshot loaded from database: " + byId.size() + " sweets");
+        return publish(byId);
+    }
+
+    private CatalogSnapshot publish(LinkedHashMap<String, Sweet> byId) {
+        CatalogSnapshot next = new CatalogSnapshot(++version, byId);
+        snapshot = next;
+        return next;
+    }
+
+    public static final class CatalogSnapshot {
+        private final long version;
+        private final Map<String, Sweet> byId;
+        private final List<Sweet> sweets;
+        private volatile EncodedCatalog encoded;
+
+        private CatalogSnapshot(long version, LinkedHashMap<String, Sweet> byId) {
+            this.version = version;
+            this.byId = Collections.unmodifiableMap(byId);
+            this.sweets = Collections.unmodifiableList(new ArrayList<>(byId.values()));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Sweet> getSweets() {
+            return sweets;
+        }
+
+        public Sweet get(String mongoId) {
+            return mongoId != null ? byId.get(mongoId) : null;
+        }
+
+        public int size() {
+            return sweets.size();
+        }
+    }
+
+    /**
+     * Pre-serialized catalog response. The gzip copy is only produced the first
+     * time a client asks for it.
+     */
+    public static final class EncodedCatalog {
+        private final long version;
+        private final byte[] json;
+        private final String etag;
+        private volatile byte[] gzip;
+
+        private EncodedCatalog(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+            // Version alone resets on restart, so the content hash keeps the tag strong
+            this.etag = "\"catalog-" + version + "-" + digest(json) + "\"";
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+
+        public byte[] getGzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+                try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                    gz.write(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                compressed = out.toByteArray();
+                gzip = compressed;
+            }
+            return compressed;
+        }
+
+        private static String digest(byte[] body) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+                StringBuilder hex = new StringBuilder(16);
+                for (int i = 0; i < 8; i++) {
+                    hex.append(String.format("%02x", hash[i]));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
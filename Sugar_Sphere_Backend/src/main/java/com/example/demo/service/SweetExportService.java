@@ -0,0 +1,131 @@
+package com.example.demo.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.model.Sweet;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Writes the sweets collection to a stream, one document at a time from a
+ * MongoDB cursor, so memory use stays flat whatever the catalog size. The
+ * output (NDJSON or CSV) uses the API field names and can be fed back into
+ * {@link SweetImportService}.
+ */
+@Service
+public class SweetExportService {
+
+    private static final int CURSOR_BATCH_SIZE = 500;
+    private static final String CSV_HEADER = "id,_id,name,category,description,price,quantity,reorderThreshold,imageUrl,updatedAt";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format parse(String value) {
+            return "csv".equalsIgnoreCase(value) ? CSV : NDJSON;
+        }
+    }
+
+    // Incremental exports are ordered by (updatedAt, _id); a feed resumes from the last row it saw by passing
+    // its updatedAt and _id, and rows sharing that timestamp are not skipped
+    public void export(OutputStream target, Format format, LocalDateTime updatedSince, String afterId, boolean gzip)
+            throws IOException {
+        Query query = new Query();
+        if (updatedSince != null) {
+            if (afterId != null) {
+                query.addCriteria(new Criteria().orOperator(
+                        Criteria.where("updatedAt").gt(updatedSince),
+                        Criteria.where("updatedAt").is(updatedSince).and("_id").gt(afterId)));
+            } else {
+                query.addCriteria(Criteria.where("updatedAt").gte(updatedSince));
+            }
+            query.with(Sort.by("updatedAt", "_id"));
+        }
+        query.cursorBatchSize(CURSOR_BATCH_SIZE);
+
+        OutputStream out = gzip ? new GZIPOutputStream(target, 8192) : target;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        long count = 0;
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try (Stream<Sweet> sweets = mongoTemplate.stream(query, Sweet.class)) {
+            for (Sweet sweet : (Iterable<Sweet>) sweets::iterator) {
+                if (format == Format.CSV) {
+                    writeCsv(writer, sweet);
+                } else {
+                    writer.write(jsonMapper.writeValueAsString(sweet));
+                    writer.write('\n');
+                }
+                count++;
+            }
+        }
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) out).finish();
+        }
+        System.out.println("Catalog export: " + count + " sweets as " + format
+                + (updatedSince != null ? " updated since " + updatedSince : "")
+                + (afterId != null ? " after " + afterId : ""));
+    }
+
+    private static void writeCsv(Writer writer, Sweet sweet) throws IOException {
+        writer.write(csv(sweet.getId()));
+        writer.write(',');
+        writer.write(csv(sweet.get_id()));
+        writer.write(',');
+        writer.write(csv(sweet.getName()));
+        writer.write(',');
+        writer.write(csv(sweet.getCategory()));
+        writer.write(',');
+        writer.write(csv(sweet.getDescription()));
+        writer.write(',');
+        writer.write(csv(sweet.getPrice()));
+        writer.write(',');
+        writer.write(csv(sweet.getQuantity()));
+        writer.write(',');
+        writer.write(csv(sweet.getReorderThreshold()));
+        writer.write(',');
+        writer.write(csv(sweet.getImageUrl()));
+        writer.write(',');
+        writer.write(csv(sweet.getUpdatedAt()));
+        writer.write('\n');
+    }
+
+    // RFC 4180: quote fields holding a separator, quote or line break; double inner quotes
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + text.replace("\"", "\"\"") + '"';
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.FacetCount;
+import com.example.demo.dto.SweetFacets;
+import com.example.demo.event.SweetChangedEvent;
+import com.example.demo.model.Sweet;
+
+/**
+ * Per-category and per-price-bucket counters (total and in stock), maintained
+ * incrementally from {@link SweetChangedEvent} so facet counts never need a
+ * collection scan. Counts for a search are taken over its matches in memory.
+ */
+@Service
+public class SweetFacetService {
+
+    private static final String UNCATEGORIZED = "Uncategorized";
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    // Upper bounds (exclusive) of every bucket but the last, e.g. 100,250,500,1000
+    @Value("${app.facets.price-buckets:100,250,500,1000}")
+    private int[] priceBounds;
+
+    private Counts counts;
+    private long version;
+    private volatile boolean built;
+
+    public SweetFacets getFacets() {
+        if (!built) {
+            // fetched before taking our monitor: loading the catalog may wait on the cache's monitor
+            SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+            synchronized (this) {
+                if (!built) {
+                    rebuild(snapshot);
+                }
+            }
+        }
+        synchronized (this) {
+            return counts.toFacets(version);
+        }
+    }
+
+    // Counts over a set of matched sweets (e.g. one search), at the snapshot version they were taken from
+    public SweetFacets getFacets(Iterable<Sweet> sweets, long snapshotVersion) {
+        Counts matched = new Counts(sortedBounds());
+        for (Sweet sweet : sweets) {
+            matched.count(sweet, 1);
+        }
+        return matched.toFacets(snapshotVersion);
+    }
+
+    @EventListener
+    public synchronized void onSweetChanged(SweetChangedEvent event) {
+        if (!built) {
+            // the published snapshot already contains this change
+            rebuild(catalogCache.snapshot());
+            return;
+        }
+        if (event.getPrevious() != null) {
+            counts.count(event.getPrevious(), -1);
+        }
+        if (event.getCurrent() != null) {
+            counts.count(event.getCurrent(), 1);
+        }
+        version = event.getVersion();
+    }
+
+    private void rebuild(SweetCatalogCache.CatalogSnapshot snapshot) {
+        counts = new Counts(sortedBounds());
+        for (Sweet sweet : snapshot.getSweets()) {
+            counts.count(sweet, 1);
+        }
+        version = snapshot.getVersion();
+        built = true;
+    }
+
+    private int[] sortedBounds() {
+        int[] bounds = priceBounds.clone();
+        Arrays.sort(bounds);
+        return bounds;
+    }
+
+    private static final class Counts {
+        private final int[] priceBounds;
+        // category -> { total, inStock }
+        private final Map<String, int[]> categories = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final int[] bucketTotals;
+        private final int[] bucketInStock;
+
+        private Counts(int[] priceBounds) {
+            this.priceBounds = priceBounds;
+            this.bucketTotals = new int[priceBounds.length + 1];
+            this.bucketInStock = new int[priceBounds.length + 1];
+        }
+
+        private void count(Sweet sweet, int delta) {
+            boolean inStock = sweet.getQuantity() != null && sweet.getQuantity() > 0;
+            String category = sweet.getCategory() != null && !sweet.getCategory().isBlank()
+                    ? sweet.getCategory().trim() : UNCATEGORIZED;
+            int[] counts = categories.computeIfAbsent(category, k -> new int[2]);
+            counts[0] += delta;
+            if (inStock) {
+                counts[1] += delta;
+            }
+            if (counts[0] <= 0) {
+                categories.remove(category);
+            }
+            if (sweet.getPrice() != null) {
+                int bucket = bucketOf(sweet.getPrice());
+                bucketTotals[bucket] += delta;
+                if (inStock) {
+                    bucketInStock[bucket] += delta;
+                }
+            }
+        }
+
+        private int bucketOf(int price) {
+            int i = Arrays.binarySearch(priceBounds, price);
+            // a price equal to a bound opens the next bucket
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        private SweetFacets toFacets(long version) {
+            List<FacetCount> categoryFacets = new ArrayList<>(categories.size());
+            for (Map.Entry<String, int[]> entry : categories.entrySet()) {
+                if (entry.getValue()[0] > 0) {
+                    categoryFacets.add(new FacetCount(entry.getKey(), entry.getValue()[0], entry.getValue()[1], null, null));
+                }
+            }
+            List<FacetCount> bucketFacets = new ArrayList<>(bucketTotals.length);
+            for (int i = 0; i < bucketTotals.length; i++) {
+                Integer min = i == 0 ? 0 : priceBounds[i - 1];
+                Integer max = i < priceBounds.length ? priceBounds[i] : null;
+                String key = max != null ? min + "-" + max : min + "+";
+                bucketFacets.add(new FacetCount(key, bucketTotals[i], bucketInStock[i], min, max));
+            }
+            return new SweetFacets(version, categoryFacets, bucketFacets);
+        }
+    }
+}
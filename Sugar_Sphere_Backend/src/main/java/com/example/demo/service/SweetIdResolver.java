@@ -0,0 +1,233 @@
+package com.example.demo.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.event.SweetChangedEvent;
+import com.example.demo.model.Sweet;
+
+/**
+ * Resolves the sweet references the API accepts (the legacy numeric
+ * {@code id} field or the MongoDB {@code _id}) to an {@code _id} without
+ * touching the database, so callers issue exactly one findById or none.
+ * The numeric side is an open-addressing int table; the mapping is loaded at
+ * startup and kept current from {@link SweetChangedEvent}.
+ */
+@Component
+public class SweetIdResolver {
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final IntToStringMap byNumericId = new IntToStringMap();
+    private final Map<String, Integer> numericIds = new HashMap<>();
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            // sparse: sweets created through the API have no numeric id
+            mongoTemplate.indexOps(Sweet.class)
+                    .createIndex(new Index("id", Sort.Direction.ASC).named("numeric_id").unique().sparse());
+        } catch (Exception e) {
+            System.err.println("Could not ensure unique index on sweets.id: " + e.getMessage());
+        }
+        try {
+            ensureLoaded();
+        } catch (Exception e) {
+            System.err.println("Could not preload sweet id mappings: " + e.getMessage());
+        }
+    }
+
+    // The _id for a numeric id or _id reference; empty when it cannot name a sweet
+    public Optional<String> resolve(String ref) {
+        if (ref == null || ref.isBlank()) {
+            return Optional.empty();
+        }
+        String trimmed = ref.trim();
+        if (ObjectId.isValid(trimmed)) {
+            return Optional.of(trimmed);
+        }
+        Integer numericId = parseNumericId(trimmed);
+        if (numericId == null) {
+            return Optional.empty();
+        }
+        ensureLoaded();
+        synchronized (this) {
+            return Optional.ofNullable(byNumericId.get(numericId));
+        }
+    }
+
+    public synchronized Integer numericIdOf(String mongoId) {
+        return numericIds.get(mongoId);
+    }
+
+    @EventListener
+    public void onSweetChanged(SweetChangedEvent event) {
+        synchronized (this) {
+            if (!loaded) {
+                // the published snapshot already contains this change
+                load(catalogCache.snapshot());
+                return;
+            }
+            if (event.getPrevious() != null) {
+                unmap(event.getPrevious().get_id());
+            }
+            if (event.getCurrent() != null) {
+                map(event.getCurrent());
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        // fetched before taking our monitor: loading the catalog may wait on the cache's monitor
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        synchronized (this) {
+            if (!loaded) {
+                load(snapshot);
+            }
+        }
+    }
+
+    private void load(SweetCatalogCache.CatalogSnapshot snapshot) {
+        byNumericId.clear();
+        numericIds.clear();
+        for (Sweet sweet : snapshot.getSweets()) {
+            map(sweet);
+        }
+        loaded = true;
+    }
+
+    private void map(Sweet sweet) {
+        if (sweet.getId() != null && sweet.get_id() != null) {
+            byNumericId.put(sweet.getId(), sweet.get_id());
+            numericIds.put(sweet.get_id(), sweet.getId());
+        }
+    }
+
+    private void unmap(String mongoId) {
+        Integer numericId = numericIds.remove(mongoId);
+        if (numericId != null && mongoId.equals(byNumericId.get(numericId))) {
+            byNumericId.remove(numericId);
+        }
+    }
+
+    // Parses a plain decimal int without the cost of a NumberFormatException on _id strings
+    private static Integer parseNumericId(String ref) {
+        int start = ref.charAt(0) == '-' ? 1 : 0;
+        if (start == ref.length() || ref.length() - start > 10) {
+            return null;
+        }
+        long value = 0;
+        for (int i = start; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        value = start == 1 ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return null;
+        }
+        return (int) value;
+    }
+
+    // Linear-probing int -> String table; a null value marks a free slot
+    private static final class IntToStringMap {
+        private int[] keys = new int[64];
+        private String[] values = new String[64];
+        private int size;
+
+        private String get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        private void put(int key, String value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private void remove(int key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                return;
+            }
+            values[i] = null;
+            size--;
+            // shift the rest of the probe run back so lookups never stop early
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void clear() {
+            keys = new int[64];
+            values = new String[64];
+            size = 0;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new int[capacity];
+            values = new String[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
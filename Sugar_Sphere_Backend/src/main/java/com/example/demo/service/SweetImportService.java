@@ -0,0 +1,403 @@
+package com.example.demo.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.SweetImportReport;
+import com.example.demo.dto.SweetRequest;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.model.Sweet;
+import com.example.demo.repository.SweetRepository;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Bulk catalog import. Rows are parsed one at a time from the request stream
+ * (NDJSON or CSV with a header row), validated against the
+ * {@link SweetRequest} constraints and upserted in batches through one
+ * bulkWrite each, so memory use depends on the batch size, not the file.
+ *
+ * A row updates an existing sweet when its {@code _id} or {@code id} names
+ * one (MongoDB _id or numeric id) or, without either, when a sweet with the
+ * same name exists; otherwise it is inserted. A row with an {@code _id} keeps
+ * it, so the output of {@link SweetExportService} imports onto the same
+ * documents.
+ */
+@Service
+public class SweetImportService {
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    @Autowired
+    private SweetRepository sweetRepository;
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private SweetIdResolver idResolver;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${app.import.batch-size:500}")
+    private int defaultBatchSize;
+
+    public SweetImportReport importNdjson(InputStream body, Integer batchSize) throws IOException {
+        ImportRun run = new ImportRun(batchSize(batchSize));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        long row = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            row++;
+            run.report.setRows(row);
+            try {
+                run.add(row, jsonMapper.readValue(line, SweetRequest.class));
+            } catch (JacksonException e) {
+                run.report.reject(row, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        return run.finish();
+    }
+
+    public SweetImportReport importCsv(InputStream body, Integer batchSize) throws IOException {
+        ImportRun run = new ImportRun(batchSize(batchSize));
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+        List<String> header = reader.next();
+        if (header == null) {
+            return run.finish();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(column(header.get(i)), i);
+        }
+        if (!columns.containsKey("name")) {
+            throw new BadRequestException("CSV header must contain a name (or title) column");
+        }
+
+        List<String> fields;
+        long row = 0;
+        while ((fields = reader.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            row++;
+            run.report.setRows(row);
+            SweetRequest request = new SweetRequest();
+            request.setId(field(fields, columns, "id"));
+            request.setMongoId(field(fields, columns, "_id"));
+            request.setName(field(fields, columns, "name"));
+            request.setCategory(field(fields, columns, "category"));
+            request.setDescription(field(fields, columns, "description"));
+            request.setImageUrl(field(fields, columns, "imageUrl"));
+            try {
+                request.setPrice(integer(field(fields, columns, "price")));
+            } catch (NumberFormatException e) {
+                run.report.reject(row, "Invalid price: " + field(fields, columns, "price"));
+                continue;
+            }
+            try {
+                request.setQuantity(integer(field(fields, columns, "quantity")));
+            } catch (NumberFormatException e) {
+                run.report.reject(row, "Invalid quantity: " + field(fields, columns, "quantity"));
+                continue;
+            }
+            try {
+                request.setReorderThreshold(integer(field(fields, columns, "reorderthreshold")));
+            } catch (NumberFormatException e) {
+                run.report.reject(row, "Invalid reorderThreshold: " + field(fields, columns, "reorderthreshold"));
+                continue;
+            }
+            run.add(row, request);
+        }
+        return run.finish();
+    }
+
+    private int batchSize(Integer batchSize) {
+        if (batchSize == null) {
+            return defaultBatchSize;
+        }
+        if (batchSize < 1) {
+            throw new BadRequestException("Batch size must be at least 1");
+        }
+        return Math.min(batchSize, MAX_BATCH_SIZE);
+    }
+
+    // Header names of the API (name, description, ...) and of the stored document (title, details, ...)
+    private static String column(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        switch (key) {
+            case "title":
+                return "name";
+            case "details":
+                return "description";
+            case "availablequantity":
+                return "quantity";
+            case "image":
+            case "imageurl":
+                return "imageUrl";
+            default:
+                return key;
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer integer(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    // State of one import: the pending batch and the keys already assigned by earlier rows
+    private final class ImportRun {
+        private final int batchSize;
+        private final SweetImportReport report = new SweetImportReport();
+        private final SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        private final Map<String, String> byName = new HashMap<>();
+        private final Map<Integer, String> byNumericId = new HashMap<>();
+        private final Set<String> known = new HashSet<>();
+        private final LinkedHashMap<String, PendingRow> batch = new LinkedHashMap<>();
+
+        private ImportRun(int batchSize) {
+            this.batchSize = batchSize;
+            for (Sweet sweet : snapshot.getSweets()) {
+                if (sweet.getName() != null) {
+                    byName.putIfAbsent(nameKey(sweet.getName()), sweet.get_id());
+                }
+                known.add(sweet.get_id());
+            }
+        }
+
+        private void add(long row, SweetRequest request) {
+            Set<ConstraintViolation<SweetRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                StringBuilder message = new StringBuilder();
+                for (ConstraintViolation<SweetRequest> violation : violations) {
+                    if (message.length() > 0) {
+                        message.append("; ");
+                    }
+                    message.append(violation.getPropertyPath()).append(": ").append(violation.getMessage());
+                }
+                report.reject(row, message.toString());
+                return;
+            }
+
+            Integer numericId = null;
+            String mongoId = null;
+            String objectRef = request.getMongoId() != null ? request.getMongoId().trim() : null;
+            if (objectRef != null && !objectRef.isEmpty()) {
+                if (!ObjectId.isValid(objectRef)) {
+                    report.reject(row, "_id must be a MongoDB _id: " + objectRef);
+                    return;
+                }
+                mongoId = objectRef;
+            }
+            String ref = request.getId() != null ? request.getId().trim() : null;
+            if (ref != null && !ref.isEmpty()) {
+                if (ObjectId.isValid(ref)) {
+                    if (mongoId == null) {
+                        mongoId = ref;
+                    }
+                } else {
+                    try {
+                        numericId = Integer.valueOf(ref);
+                    } catch (NumberFormatException e) {
+                        report.reject(row, "id must be a MongoDB _id or a number: " + ref);
+                        return;
+                    }
+                    if (mongoId == null) {
+                        mongoId = byNumericId.get(numericId);
+                    }
+                    if (mongoId == null) {
+                        mongoId = idResolver.resolve(ref).orElse(null);
+                    }
+                }
+            } else if (mongoId == null) {
+                mongoId = byName.get(nameKey(request.getName()));
+            }
+            if (mongoId == null) {
+                mongoId = new ObjectId().toHexString();
+            }
+
+            // the same sweet twice in one unordered batch would race; write the first one before
+            if (batch.containsKey(mongoId)) {
+                flush();
+            }
+            Sweet sweet = new Sweet();
+            sweet.set_id(mongoId);
+            sweet.setId(numericId);
+            sweet.setName(request.getName().trim());
+            sweet.setCategory(request.getCategory());
+            sweet.setDescription(request.getDescription());
+            sweet.setPrice(request.getPrice());
+            sweet.setQuantity(request.getQuantity());
+            sweet.setImageUrl(request.getImageUrl());
+            sweet.setReorderThreshold(request.getReorderThreshold());
+            batch.put(mongoId, new PendingRow(row, sweet, known.contains(mongoId)));
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<PendingRow> rows = new ArrayList<>(batch.values());
+            List<Sweet> sweets = new ArrayList<>(rows.size());
+            for (PendingRow pending : rows) {
+                sweets.add(pending.sweet);
+            }
+            batch.clear();
+            report.setBatches(report.getBatches() + 1);
+
+            Map<Integer, String> failures;
+            try {
+                failures = sweetRepository.upsertAll(sweets);
+            } catch (Exception e) {
+                System.err.println("Import batch failed: " + e.getMessage());
+                for (PendingRow pending : rows) {
+                    report.reject(pending.row, "Batch failed: " + e.getMessage());
+                }
+                return;
+            }
+
+            List<String> written = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                PendingRow pending = rows.get(i);
+                String failure = failures.get(i);
+                if (failure != null) {
+                    report.reject(pending.row, failure);
+                    continue;
+                }
+                Sweet sweet = pending.sweet;
+                written.add(sweet.get_id());
+                known.add(sweet.get_id());
+                byName.put(nameKey(sweet.getName()), sweet.get_id());
+                if (sweet.getId() != null) {
+                    byNumericId.put(sweet.getId(), sweet.get_id());
+                }
+                if (pending.existing) {
+                    report.setUpdated(report.getUpdated() + 1);
+                } else {
+                    report.setInserted(report.getInserted() + 1);
+                }
+            }
+            // read back so the catalog holds the stored documents (e.g. a kept numeric id)
+            if (!written.isEmpty()) {
+                catalogCache.putAll(sweetRepository.findAllById(written));
+            }
+        }
+
+        private SweetImportReport finish() {
+            flush();
+            System.out.println("Catalog import: " + report.getInserted() + " inserted, " + report.getUpdated()
+                    + " updated, " + report.getFailed() + " failed in " + report.getBatches() + " batches");
+            return report;
+        }
+
+        private String nameKey(String name) {
+            return name.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final class PendingRow {
+        private final long row;
+        private final Sweet sweet;
+        private final boolean existing;
+
+        private PendingRow(long row, Sweet sweet, boolean existing) {
+            this.row = row;
+            this.sweet = sweet;
+            this.existing = existing;
+        }
+    }
+
+    // RFC 4180 records: quoted fields may hold commas, doubled quotes and line breaks
+    private static final class CsvReader {
+        private final BufferedReader reader;
+
+        private CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        private List<String> next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    String more = reader.readLine();
+                    if (more == null) {
+                        break;
+                    }
+                    field.append('\n');
+                    line = more;
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.event.SweetChangedEvent;
+import com.example.demo.model.Sweet;
+
+/**
+ * Tokenized inverted index over sweet title, category and details. Documents
+ * are addressed by int ordinals and posting lists are plain int arrays, so a
+ * query is a handful of array scans instead of a $regex collection scan.
+ * Built from the catalog snapshot and kept in sync through
+ * {@link SweetChangedEvent}.
+ */
+@Component
+public class SweetSearchIndex {
+
+    private static final int TITLE_WEIGHT = 4;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DETAILS_WEIGHT = 1;
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> postings, sorted so the last query token can be matched as a prefix
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+
+    // ordinal -> _id; null once the document was removed or re-indexed
+    private String[] docIds = new String[64];
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private int nextOrdinal;
+    private volatile boolean built;
+
+    // Ranked _ids of sweets matching every token of the query
+    public List<String> search(String query) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0) {
+            return List.of();
+        }
+        ensureBuilt();
+
+        lock.readLock().lock();
+        try {
+            int[] scores = new int[nextOrdinal];
+            int[] matched = new int[nextOrdinal];
+            for (int t = 0; t < tokens.length; t++) {
+                boolean last = t == tokens.length - 1;
+                SortedMap<String, PostingList> candidates = last
+                        ? terms.subMap(tokens[t], tokens[t] + Character.MAX_VALUE)
+                        : exact(tokens[t]);
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+                for (PostingList postings : candidates.values()) {
+                    for (int i = 0; i < postings.size; i++) {
+                        int ord = postings.docs[i];
+                        // only documents that matched every earlier token stay in the race
+                        if (matched[ord] == t) {
+                            matched[ord] = t + 1;
+                            scores[ord] += postings.weights[i];
+                        } else if (matched[ord] == t + 1) {
+                            scores[ord] += postings.weights[i];
+                        }
+                    }
+                }
+            }
+
+            // pack (score, ordinal) into longs so ranking is a primitive sort
+            long[] hits = new long[nextOrdinal];
+            int count = 0;
+            for (int ord = 0; ord < nextOrdinal; ord++) {
+                if (matched[ord] == tokens.length && docIds[ord] != null) {
+                    hits[count++] = ((long) scores[ord] << 32) | (Integer.MAX_VALUE - ord);
+                }
+            }
+            Arrays.sort(hits, 0, count);
+
+            List<String> result = new ArrayList<>(count);
+            for (int i = count - 1; i >= 0; i--) {
+                int ord = Integer.MAX_VALUE - (int) hits[i];
+                result.add(docIds[ord]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onSweetChanged(SweetChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!built || (nextOrdinal > 64 && nextOrdinal > 2 * ordinals.size())) {
+                // the published snapshot already contains this change
+                rebuild(catalogCache.getAll());
+                built = true;
+                return;
+            }
+            if (!event.isRemoval() && sameText(event.getPrevious(), event.getCurrent())) {
+                // stock and price changes leave the postings as they are
+                return;
+            }
+            unindex(event.getSweetId());
+            if (!event.isRemoval()) {
+                index(event.getCurrent());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean sameText(Sweet previous, Sweet current) {
+        return previous != null
+                && Objects.equals(previous.getName(), current.getName())
+                && Objects.equals(previous.getCategory(), current.getCategory())
+                && Objects.equals(previous.getDescription(), current.getDescription());
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        // fetched before taking our lock: loading the catalog may wait on the cache's monitor
+        List<Sweet> sweets = catalogCache.getAll();
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                rebuild(sweets);
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuild(List<Sweet> sweets) {
+        terms.clear();
+        ordinals.clear();
+        docIds = new String[64];
+        nextOrdinal = 0;
+        for (Sweet sweet : sweets) {
+            index(sweet);
+        }
+    }
+
+    // Re-indexed documents always get a fresh ordinal, so postings stay sorted by appending
+    private void index(Sweet sweet) {
+        Map<String, Integer> weights = new HashMap<>();
+        addTokens(weights, sweet.getName(), TITLE_WEIGHT);
+        addTokens(weights, sweet.getCategory(), CATEGORY_WEIGHT);
+        addTokens(weights, sweet.getDescription(), DETAILS_WEIGHT);
+
+        int ord = nextOrdinal++;
+        if (ord == docIds.length) {
+            docIds = Arrays.copyOf(docIds, ord * 2);
+        }
+        docIds[ord] = sweet.get_id();
+        ordinals.put(sweet.get_id(), ord);
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), k -> new PostingList()).add(ord, entry.getValue());
+        }
+    }
+
+    // Dead postings are skipped at query time and dropped on the next rebuild
+    private void unindex(String mongoId) {
+        Integer ord = ordinals.remove(mongoId);
+        if (ord != null) {
+            docIds[ord] = null;
+        }
+    }
+
+    private SortedMap<String, PostingList> exact(String token) {
+        PostingList postings = terms.get(token);
+        TreeMap<String, PostingList> single = new TreeMap<>();
+        if (postings != null) {
+            single.put(token, postings);
+        }
+        return single;
+    }
+
+    private static void addTokens(Map<String, Integer> weights, String text, int weight) {
+        for (String token : tokenize(text)) {
+            weights.merge(token, weight, Integer::sum);
+        }
+    }
+
+    static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static final class PostingList {
+        private int[] docs = new int[4];
+        private int[] weights = new int[4];
+        private int size;
+
+        private void add(int ord, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = ord;
+            weights[size] = weight;
+            size++;
+        }
+    }
+}
@@ -1,11 +1,32 @@
 package com.example.demo.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bson.types.ObjectId;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.dto.FlashPurchaseStatus;
+import com.example.demo.dto.FlashSaleStatus;
+import com.example.demo.dto.PageResponse;
+import com.example.demo.dto.PopularSweet;
+import com.example.demo.dto.SweetCard;
+import com.example.demo.dto.SweetFacets;
+import com.example.demo.dto.Suggestion;
 import com.example.demo.dto.SweetRequest;
+import com.example.demo.dto.SweetSearchCriteria;
+import com.example.demo.dto.SweetSearchCriteria.SortOrder;
+import com.example.demo.dto.SweetSearchResponse;
+import com.example.demo.event.SweetsSoldEvent;
 import com.example.demo.exception.BadRequestException;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.model.Sweet;
@@ -14,9 +35,42 @@ import com.example.demo.repository.SweetRepository;
 @Service
 public class SweetService {
     
+    public static final int DEFAULT_PAGE_SIZE = 24;
+    public static final int MAX_PAGE_SIZE = 100;
+    
     @Autowired
     private SweetRepository sweetRepository;
     
+    @Autowired
+    private SweetCatalogCache catalogCache;
+    
+    @Autowired
+    private SweetSearchIndex searchIndex;
+    
+    @Autowired
+    private SweetSuggestionIndex suggestionIndex;
+    
+    @Autowired
+    private SweetFacetService facetService;
+    
+    @Autowired
+    private SweetIdResolver idResolver;
+    
+    @Autowired
+    private StockReservationService reservationService;
+    
+    @Autowired
+    private FlashSaleService flashSaleService;
+    
+    @Autowired
+    private ImageStoreService imageStore;
+    
+    @Autowired
+    private PopularityTracker popularityTracker;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public Sweet createSweet(SweetRequest request) {
         Sweet sweet = new Sweet();
         sweet.setName(request.getName());
@@ -25,28 +79,237 @@ public class SweetService {
         sweet.setPrice(request.getPrice());
         sweet.setQuantity(request.getQuantity());
         sweet.setImageUrl(request.getImageUrl());
+        sweet.setImageHash(ImageStoreService.hashOf(request.getImageUrl()));
+        sweet.setReorderThreshold(request.getReorderThreshold());
+        sweet.setUpdatedAt(Sweet.timestamp());
+        sweet.setVersion(1L);
         
-        return sweetRepository.save(sweet);
+        Sweet saved = sweetRepository.save(sweet);
+        catalogCache.put(saved);
+        return saved;
     }
     
+    // Served from the in-memory catalog snapshot, not from MongoDB
     public List<Sweet> getAllSweets() {
-        List<Sweet> sweets = sweetRepository.findAll();
-        System.out.println("Total sweets found in database: " + sweets.size());
+        List<Sweet> sweets = catalogCache.getAll();
+        System.out.println("Total sweets in catalog snapshot: " + sweets.size());
         if (!sweets.isEmpty()) {
             System.out.println("First sweet: " + sweets.get(0).getName() + ", ID: " + sweets.get(0).getId());
         }
         return sweets;
     }
     
-    public List<Sweet> searchSweets(String searchTerm, String category, Double minPrice, Double maxPrice) {
-        if (searchTerm != null && !searchTerm.isEmpty()) {
-            return sweetRepository.searchByNameOrCategory(searchTerm);
-        } else if (category != null && !category.isEmpty()) {
-            return sweetRepository.findByCategory(category);
-        } else if (minPrice != null && maxPrice != null) {
-            return sweetRepository.findByPriceRange(minPrice.intValue(), maxPrice.intValue());
+    // One query combining every filter; a search term is first resolved through the in-memory index
+    public List<Sweet> searchSweets(String searchTerm, String category, Double minPrice, Double maxPrice,
+            Boolean inStock, String sort) {
+        boolean hasTerm = searchTerm != null && !searchTerm.isBlank();
+        SweetSearchCriteria criteria = criteria(category, minPrice, maxPrice, inStock);
+        criteria.setSort(SortOrder.parse(sort, hasTerm ? SortOrder.RELEVANCE : SortOrder.ID));
+        
+        List<String> ranked = null;
+        if (hasTerm) {
+            ranked = searchIndex.search(searchTerm);
+            if (ranked.isEmpty()) {
+                return List.of();
+            }
+            if (criteria.getCategory() == null && criteria.getMinPrice() == null
+                    && criteria.getMaxPrice() == null && !criteria.isInStockOnly()
+                    && criteria.getSort() == SortOrder.RELEVANCE) {
+                return findIndexed(ranked);
+            }
+            criteria.setIds(ranked);
+        }
+        
+        List<Sweet> sweets = sweetRepository.search(criteria);
+        if (ranked != null && criteria.getSort() == SortOrder.RELEVANCE) {
+            Map<String, Integer> rank = new HashMap<>();
+            for (int i = 0; i < ranked.size(); i++) {
+                rank.put(ranked.get(i), i);
+            }
+            sweets = new ArrayList<>(sweets);
+            sweets.sort(Comparator.comparingInt(sweet -> rank.getOrDefault(sweet.get_id(), Integer.MAX_VALUE)));
+        }
+        return sweets;
+    }
+    
+    // Typeahead over titles and categories, most popular first
+    public List<Suggestion> suggest(String prefix, Integer limit) {
+        int max = limit != null ? Math.min(Math.max(limit, 1), SweetSuggestionIndex.MAX_SUGGESTIONS)
+                : SweetSuggestionIndex.MAX_SUGGESTIONS;
+        return suggestionIndex.suggest(prefix, max);
+    }
+    
+    // Best sellers ("all") or trending (short windows) from the in-memory popularity tracker
+    public List<PopularSweet> getTopSellers(String window, Integer limit) {
+        int max = limit != null ? Math.min(Math.max(limit, 1), MAX_PAGE_SIZE) : 10;
+        String key = window != null && !window.isBlank() ? window.trim() : "24h";
+        // ask for a few extra in case some were deleted from the catalog since
+        List<Map.Entry<String, Double>> ranked = popularityTracker.top(key, max + 10);
+        if (ranked == null) {
+            throw new BadRequestException("Unknown window: " + key + " (one of " + popularityTracker.getWindows() + ")");
+        }
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        List<PopularSweet> top = new ArrayList<>(max);
+        for (Map.Entry<String, Double> entry : ranked) {
+            Sweet sweet = snapshot.get(entry.getKey());
+            if (sweet != null && top.size() < max) {
+                top.add(new PopularSweet(SweetCard.from(sweet), Math.round(entry.getValue() * 10) / 10.0));
+            }
+        }
+        return top;
+    }
+    
+    // Ranked hits from the in-memory index, resolved against the catalog snapshot
+    private List<Sweet> findIndexed(List<String> ranked) {
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        List<Sweet> sweets = new ArrayList<>(ranked.size());
+        for (String mongoId : ranked) {
+            Sweet sweet = snapshot.get(mongoId);
+            if (sweet != null) {
+                sweets.add(sweet);
+            }
+        }
+        return sweets;
+    }
+    
+    // Keyset page of catalog cards, ordered by _id ("id") or by price ("price_asc"/"price_desc")
+    public PageResponse<SweetCard> getCatalogPage(String cursor, Integer size, String sortBy) {
+        return searchCatalogPage(null, null, null, null, null, sortBy, cursor, size);
+    }
+    
+    // Keyset page of search results with facet counts over everything the search matched (not just the page)
+    public SweetSearchResponse searchCatalog(String searchTerm, String category, Double minPrice,
+            Double maxPrice, Boolean inStock, String sortBy, String cursor, Integer size) {
+        PageResponse<SweetCard> page = searchCatalogPage(searchTerm, category, minPrice, maxPrice,
+                inStock, sortBy, cursor, size);
+        boolean filtered = (searchTerm != null && !searchTerm.isBlank()) || (category != null && !category.isBlank())
+                || minPrice != null || maxPrice != null || Boolean.TRUE.equals(inStock);
+        if (!filtered) {
+            return SweetSearchResponse.of(page, facetService.getFacets());
+        }
+        SweetCatalogCache.CatalogSnapshot snapshot = catalogCache.snapshot();
+        return SweetSearchResponse.of(page, facetService.getFacets(
+                matching(snapshot, searchTerm, category, minPrice, maxPrice, inStock), snapshot.getVersion()));
+    }
+    
+    // The same filters as the MongoDB search, applied to the catalog snapshot
+    private List<Sweet> matching(SweetCatalogCache.CatalogSnapshot snapshot, String searchTerm, String category,
+            Double minPrice, Double maxPrice, Boolean inStock) {
+        List<Sweet> candidates;
+        if (searchTerm != null && !searchTerm.isBlank()) {
+            candidates = new ArrayList<>();
+            for (String mongoId : searchIndex.search(searchTerm)) {
+                Sweet sweet = snapshot.get(mongoId);
+                if (sweet != null) {
+                    candidates.add(sweet);
+                }
+            }
+        } else {
+            candidates = snapshot.getSweets();
+        }
+        String categoryFilter = category != null && !category.isBlank() ? category : null;
+        List<Sweet> matched = new ArrayList<>();
+        for (Sweet sweet : candidates) {
+            if (categoryFilter != null && !categoryFilter.equals(sweet.getCategory())) {
+                continue;
+            }
+            if ((minPrice != null || maxPrice != null) && sweet.getPrice() == null) {
+                continue;
+            }
+            if ((minPrice != null && sweet.getPrice() < minPrice) || (maxPrice != null && sweet.getPrice() > maxPrice)) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(inStock) && (sweet.getQuantity() == null || sweet.getQuantity() <= 0)) {
+                continue;
+            }
+            matched.add(sweet);
+        }
+        return matched;
+    }
+    
+    public SweetFacets getFacets() {
+        return facetService.getFacets();
+    }
+    
+    // Keyset page of search results as cards; cursors are "<_id>" or "<price>:<_id>" for price order
+    public PageResponse<SweetCard> searchCatalogPage(String searchTerm, String category, Double minPrice,
+            Double maxPrice, Boolean inStock, String sortBy, String cursor, Integer size) {
+        int limit = pageSize(size);
+        SweetSearchCriteria criteria = criteria(category, minPrice, maxPrice, inStock);
+        SortOrder sort = "price".equalsIgnoreCase(sortBy) ? SortOrder.PRICE_ASC : SortOrder.parse(sortBy, SortOrder.ID);
+        if (sort != SortOrder.PRICE_ASC && sort != SortOrder.PRICE_DESC) {
+            sort = SortOrder.ID;
+        }
+        criteria.setSort(sort);
+        criteria.setCardsOnly(true);
+        criteria.setLimit(limit + 1);
+        
+        boolean priceCursor = sort != SortOrder.ID;
+        if (cursor != null && !cursor.isEmpty()) {
+            String afterId = cursor;
+            if (priceCursor) {
+                int sep = cursor.indexOf(':');
+                if (sep < 0) {
+                    throw new BadRequestException("Invalid cursor: " + cursor);
+                }
+                try {
+                    criteria.setAfterPrice(Integer.parseInt(cursor.substring(0, sep)));
+                } catch (NumberFormatException e) {
+                    throw new BadRequestException("Invalid cursor: " + cursor);
+                }
+                afterId = cursor.substring(sep + 1);
+            }
+            if (!ObjectId.isValid(afterId)) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+            criteria.setAfterId(afterId);
+        }
+        
+        if (searchTerm != null && !searchTerm.isBlank()) {
+            List<String> ranked = searchIndex.search(searchTerm);
+            if (ranked.isEmpty()) {
+                return PageResponse.of(List.of(), null);
+            }
+            criteria.setIds(ranked);
+        }
+        return toPage(sweetRepository.search(criteria), limit, priceCursor);
+    }
+    
+    private SweetSearchCriteria criteria(String category, Double minPrice, Double maxPrice, Boolean inStock) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new BadRequestException("minPrice cannot be greater than maxPrice");
+        }
+        SweetSearchCriteria criteria = new SweetSearchCriteria();
+        criteria.setCategory(category != null && !category.isBlank() ? category : null);
+        criteria.setMinPrice(minPrice);
+        criteria.setMaxPrice(maxPrice);
+        criteria.setInStockOnly(Boolean.TRUE.equals(inStock));
+        return criteria;
+    }
+    
+    private int pageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+    
+    // Rows are fetched with limit + 1 so we know whether another page exists
+    private PageResponse<SweetCard> toPage(List<Sweet> rows, int limit, boolean priceCursor) {
+        boolean hasMore = rows.size() > limit;
+        List<SweetCard> cards = new ArrayList<>(Math.min(rows.size(), limit));
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            cards.add(SweetCard.from(rows.get(i)));
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            SweetCard last = cards.get(cards.size() - 1);
+            nextCursor = priceCursor ? last.getPrice() + ":" + last.get_id() : last.get_id();
         }
-        return sweetRepository.findAll();
+        return PageResponse.of(cards, nextCursor);
     }
     
     // Get by MongoDB _id (String)
@@ -61,58 +324,160 @@ public class SweetService {
                 .orElseThrow(() -> new ResourceNotFoundException("Sweet not found with id: " + id));
     }
     
+    // Accepts either the numeric id or the MongoDB _id; at most one findById
+    private Sweet findSweet(String ref) {
+        return getSweetById(resolveId(ref));
+    }
+    
+    private String resolveId(String ref) {
+        return idResolver.resolve(ref)
+                .orElseThrow(() -> new ResourceNotFoundException("Sweet not found with id: " + ref));
+    }
+    
+    // One findAndModify that bumps the version, so the catalog orders it against concurrent stock updates
     public Sweet updateSweet(String id, SweetRequest request) {
-        // Try to parse as Integer (numeric id) first, if fails use as MongoDB _id
-        Sweet sweet;
-        try {
-            Integer numericId = Integer.parseInt(id);
-            sweet = getSweetByNumericId(numericId);
-        } catch (NumberFormatException e) {
-            sweet = getSweetById(id);
-        }
+        String mongoId = resolveId(id);
         
-        sweet.setName(request.getName());
+        Update update = new Update()
+                .set("title", request.getName())
+                .set("details", request.getDescription())
+                .set("availableQuantity", request.getQuantity())
+                .set("image", request.getImageUrl())
+                // the hash follows the URL: a stored asset's path keeps it, an external URL drops it
+                .set("imageHash", ImageStoreService.hashOf(request.getImageUrl()))
+                // null clears it back to app.inventory.default-reorder-threshold, as on create
+                .set("reorderThreshold", request.getReorderThreshold());
         if (request.getCategory() != null) {
-            sweet.setCategory(request.getCategory());
+            update.set("category", request.getCategory());
         }
-        sweet.setDescription(request.getDescription());
         if (request.getPrice() != null) {
-            sweet.setPrice(request.getPrice().intValue());
+            update.set("price", request.getPrice().intValue());
         }
-        sweet.setQuantity(request.getQuantity());
-        sweet.setImageUrl(request.getImageUrl());
         
-        return sweetRepository.save(sweet);
+        Sweet saved = sweetRepository.updateFields(mongoId, update)
+                .orElseThrow(() -> new ResourceNotFoundException("Sweet not found with id: " + id));
+        catalogCache.put(saved);
+        return saved;
     }
     
     public void deleteSweet(String id) {
-        // Try to parse as Integer (numeric id) first, if fails use as MongoDB _id
-        Sweet sweet;
-        try {
-            Integer numericId = Integer.parseInt(id);
-            sweet = getSweetByNumericId(numericId);
-        } catch (NumberFormatException e) {
-            sweet = getSweetById(id);
-        }
+        Sweet sweet = findSweet(id);
         sweetRepository.delete(sweet);
+        catalogCache.remove(sweet.get_id());
     }
     
     public Sweet purchaseSweet(String id) {
-        // Try to parse as Integer (numeric id) first, if fails use as MongoDB _id
-        Sweet sweet;
+        String mongoId = resolveId(id);
+        // Sweets on a flash sale go through admission control instead of hitting the document directly
+        Sweet flashSold = flashSaleService.purchase(mongoId).orElse(null);
+        if (flashSold != null) {
+            return flashSold;
+        }
+        // Units held for pending checkouts are not for sale: the unit is held under the reservation lock
+        // (held + 1 <= stock) before MongoDB is touched, and the hold is dropped once the catalog has the result
+        String reservationId = "purchase_" + UUID.randomUUID();
         try {
-            Integer numericId = Integer.parseInt(id);
-            sweet = getSweetByNumericId(numericId);
-        } catch (NumberFormatException e) {
-            sweet = getSweetById(id);
+            reservationService.reserve(reservationId, null, Map.of(mongoId, 1), null);
+        } catch (BadRequestException e) {
+            throw stockFailure(mongoId, id);
         }
-        
-        if (sweet.getQuantity() <= 0) {
-            throw new BadRequestException("Sweet is out of stock");
+        Sweet saved;
+        try {
+            saved = sweetRepository.decrementStock(mongoId, 1)
+                    .orElseThrow(() -> stockFailure(mongoId, id));
+            catalogCache.put(saved);
+        } finally {
+            reservationService.commit(reservationId);
         }
-        
-        sweet.setQuantity(sweet.getQuantity() - 1);
-        return sweetRepository.save(sweet);
+        eventPublisher.publishEvent(new SweetsSoldEvent(Map.of(saved.get_id(), 1)));
+        return saved;
+    }
+    
+    public FlashSaleStatus startFlashSale(String id, Integer allotment, Integer queueCapacity) {
+        return flashSaleService.enable(resolveId(id), allotment, queueCapacity);
+    }
+    
+    public FlashPurchaseStatus getFlashPurchase(String ticket) {
+        FlashPurchaseStatus status = flashSaleService.getPurchaseStatus(ticket);
+        if (status == null) {
+            throw new ResourceNotFoundException("No pending purchase with ticket: " + ticket);
+        }
+        return status;
+    }
+    
+    public FlashSaleStatus stopFlashSale(String id) {
+        FlashSaleStatus status = flashSaleService.disable(resolveId(id));
+        if (status == null) {
+            throw new ResourceNotFoundException("No flash sale running for sweet: " + id);
+        }
+        return status;
+    }
+    
+    public FlashSaleStatus getFlashSale(String id) {
+        FlashSaleStatus status = flashSaleService.getStatus(resolveId(id));
+        if (status == null) {
+            throw new ResourceNotFoundException("No flash sale running for sweet: " + id);
+        }
+        return status;
+    }
+    
+    public List<FlashSaleStatus> getFlashSales() {
+        return flashSaleService.getActiveSales();
+    }
+    
+    // Points the sweet at a stored image asset; imageUrl becomes its /api/images path
+    public Sweet attachImage(String id, String imageHash) {
+        Update update = new Update().set("imageHash", imageHash).set("image", ImageStoreService.urlFor(imageHash));
+        Sweet saved = sweetRepository.updateFields(resolveId(id), update)
+                .orElseThrow(() -> new ResourceNotFoundException("Sweet not found with id: " + id));
+        catalogCache.put(saved);
+        return saved;
+    }
+    
+    public Sweet attachImageFromUrl(String id, String url) throws IOException {
+        if (url == null || url.isBlank()) {
+            throw new BadRequestException("Image URL is required");
+        }
+        return attachImage(id, imageStore.ingestUrl(url));
+    }
+    
+    // Ingests the external imageUrl of every sweet that has no stored asset yet, and points sweets whose
+    // asset is already stored at its /api/images path
+    public Map<String, Object> migrateImages() {
+        int migrated = 0;
+        Map<String, String> failures = new HashMap<>();
+        for (Sweet sweet : catalogCache.getAll()) {
+            String url = sweet.getImageUrl();
+            String hash = sweet.getImageHash();
+            if (hash != null ? ImageStoreService.urlFor(hash).equals(url) : url == null || !url.startsWith("http")) {
+                continue;
+            }
+            try {
+                attachImage(sweet.get_id(), hash != null ? hash : imageStore.ingestUrl(url));
+                migrated++;
+            } catch (Exception e) {
+                failures.put(sweet.get_id(), e.getMessage());
+            }
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("migrated", migrated);
+        result.put("failed", failures);
+        return result;
+    }
+    
+    // Stock, units on hold and what is left to sell, all from memory
+    public Map<String, Object> getAvailability(String id) {
+        String mongoId = resolveId(id);
+        Sweet sweet = catalogCache.snapshot().get(mongoId);
+        if (sweet == null) {
+            throw new ResourceNotFoundException("Sweet not found with id: " + id);
+        }
+        Map<String, Object> availability = new HashMap<>();
+        availability.put("sweetId", mongoId);
+        availability.put("quantity", sweet.getQuantity());
+        availability.put("held", reservationService.held(mongoId));
+        availability.put("available", reservationService.available(mongoId));
+        return availability;
     }
     
     public Sweet restockSweet(String id, Integer quantity) {
@@ -120,16 +485,18 @@ public class SweetService {
             throw new BadRequestException("Quantity must be a positive number");
         }
         
-        // Try to parse as Integer (numeric id) first, if fails use as MongoDB _id
-        Sweet sweet;
-        try {
-            Integer numericId = Integer.parseInt(id);
-            sweet = getSweetByNumericId(numericId);
-        } catch (NumberFormatException e) {
-            sweet = getSweetById(id);
+        String mongoId = resolveId(id);
+        Sweet saved = sweetRepository.incrementStock(mongoId, quantity)
+                .orElseThrow(() -> new ResourceNotFoundException("Sweet not found with id: " + id));
+        catalogCache.put(saved);
+        return saved;
+    }
+    
+    // The guarded update matched nothing: the catalog tells us whether the sweet exists at all
+    private RuntimeException stockFailure(String mongoId, String ref) {
+        if (catalogCache.snapshot().get(mongoId) == null) {
+            return new ResourceNotFoundException("Sweet not found with id: " + ref);
         }
-        
-        sweet.setQuantity(sweet.getQuantity() + quantity);
-        return sweetRepository.save(sweet);
+        return new BadRequestException("Sweet is out of stock");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,447 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.dto.Suggestion;
+import com.example.demo.event.SweetChangedEvent;
+import com.example.demo.event.SweetsSoldEvent;
+import com.example.demo.model.Sweet;
+
+/**
+ * Prefix trie over sweet titles and categories for typeahead. Every title is
+ * inserted once per word start, so "choc" finds "Dark Chocolate". Each node
+ * keeps the top entries of its subtree ordered by popularity (all-time units
+ * sold, as counted by {@link PopularityTracker}), so
+ * a lookup is a walk down the prefix and a copy of at most
+ * {@link #MAX_SUGGESTIONS} entries.
+ */
+@Component
+public class SweetSuggestionIndex {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingLong((Entry e) -> -e.score)
+            .thenComparing(e -> e.label)
+            .thenComparing(e -> e.id);
+
+    @Autowired
+    private SweetCatalogCache catalogCache;
+
+    @Autowired
+    private PopularityTracker popularityTracker;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node root = new Node();
+    private final Map<String, Entry> sweets = new HashMap<>();
+    private final Map<String, Entry> categories = new HashMap<>();
+
+    private volatile boolean built;
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        ensureBuilt();
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            int count = Math.min(limit, node.topSize);
+            List<Suggestion> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = node.top[i];
+                suggestions.add(new Suggestion(entry.type, entry.id, entry.label, entry.score));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // an index built during startup ranked everything before the popularity counts were restored
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onSweetChanged(SweetChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // the published snapshot already contains this change
+                rebuild(catalogCache.getAll());
+                built = true;
+                return;
+            }
+            if (event.isRemoval()) {
+                removeSweet(event.getSweetId());
+            } else {
+                upsertSweet(event.getCurrent());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onSweetsSold(SweetsSoldEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Integer> sale : event.getQuantities().entrySet()) {
+                long units = sale.getValue();
+                if (units <= 0) {
+                    continue;
+                }
+                Entry sweet = sweets.get(sale.getKey());
+                if (sweet != null) {
+                    raise(sweet, units);
+                    Entry category = sweet.category != null ? categories.get(sweet.category) : null;
+                    if (category != null) {
+                        raise(category, units);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        // fetched before taking our lock: loading the catalog may wait on the cache's monitor
+        List<Sweet> all = catalogCache.getAll();
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                rebuild(all);
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuild(List<Sweet> all) {
+        root = new Node();
+        sweets.clear();
+        categories.clear();
+        for (Sweet sweet : all) {
+            addSweet(sweet);
+        }
+    }
+
+    private void upsertSweet(Sweet sweet) {
+        Entry existing = sweets.get(sweet.get_id());
+        if (existing != null) {
+            if (existing.label.equals(label(sweet.getName()))
+                    && Objects.equals(existing.category, categoryKey(sweet.getCategory()))) {
+                return;
+            }
+            removeSweet(sweet.get_id());
+        }
+        addSweet(sweet);
+    }
+
+    private void addSweet(Sweet sweet) {
+        String name = label(sweet.getName());
+        if (name.isEmpty()) {
+            return;
+        }
+        long score = Math.round(popularityTracker.estimate(PopularityTracker.ALL_TIME, sweet.get_id()));
+        Entry entry = new Entry("sweet", sweet.get_id(), name, score);
+        entry.category = categoryKey(sweet.getCategory());
+        sweets.put(entry.id, entry);
+        insert(entry);
+
+        if (entry.category != null) {
+            Entry category = categories.get(entry.category);
+            if (category == null) {
+                String categoryLabel = label(sweet.getCategory());
+                category = new Entry("category", categoryLabel, categoryLabel, 0);
+                categories.put(entry.category, category);
+                insert(category);
+            }
+            category.members++;
+            if (entry.score > 0) {
+                raise(category, entry.score);
+            }
+        }
+    }
+
+    private void removeSweet(String mongoId) {
+        Entry entry = sweets.remove(mongoId);
+        if (entry == null) {
+            return;
+        }
+        delete(entry);
+
+        Entry category = entry.category != null ? categories.get(entry.category) : null;
+        if (category != null) {
+            // scores only rise in place; a drop means re-inserting the entry
+            delete(category);
+            category.members--;
+            category.score -= entry.score;
+            if (category.members > 0) {
+                insert(category);
+            } else {
+                categories.remove(entry.category);
+            }
+        }
+    }
+
+    private void insert(Entry entry) {
+        for (String key : entry.keys) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+                node.offer(entry);
+            }
+            node.addTerminal(entry);
+        }
+    }
+
+    private void raise(Entry entry, long units) {
+        entry.score += units;
+        for (String key : entry.keys) {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+                if (node != null) {
+                    node.offer(entry);
+                }
+            }
+        }
+    }
+
+    // Removes the entry everywhere, then refreshes affected nodes deepest-first from their children
+    private void delete(Entry entry) {
+        List<List<Node>> paths = new ArrayList<>();
+        for (String key : entry.keys) {
+            List<Node> path = new ArrayList<>(key.length());
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+                if (node != null) {
+                    path.add(node);
+                }
+            }
+            if (node != null) {
+                node.removeTerminal(entry);
+            }
+            paths.add(path);
+        }
+        int maxDepth = 0;
+        for (List<Node> path : paths) {
+            maxDepth = Math.max(maxDepth, path.size());
+        }
+        for (int depth = maxDepth - 1; depth >= 0; depth--) {
+            for (List<Node> path : paths) {
+                if (depth < path.size() && path.get(depth).contains(entry)) {
+                    path.get(depth).recompute();
+                }
+            }
+        }
+    }
+
+    private static String label(String text) {
+        return text == null ? "" : text.trim();
+    }
+
+    private static String categoryKey(String category) {
+        String key = normalize(category);
+        return key.isEmpty() ? null : key;
+    }
+
+    // Lower-cased, punctuation folded to single spaces
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+            } else if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+                out.append(' ');
+            }
+        }
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            out.setLength(end - 1);
+        }
+        return out.toString();
+    }
+
+    private static final class Entry {
+        private final String type;
+        private final String id;
+        private final String label;
+        private final String[] keys;
+        private long score;
+        private String category;
+        private int members;
+
+        private Entry(String type, String id, String label, long score) {
+            this.type = type;
+            this.id = id;
+            this.label = label;
+            this.score = score;
+            String normalized = normalize(label);
+            Set<String> starts = new LinkedHashSet<>();
+            if (!normalized.isEmpty()) {
+                starts.add(normalized);
+            }
+            for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+                starts.add(normalized.substring(i + 1));
+            }
+            this.keys = starts.toArray(new String[0]);
+        }
+    }
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private Entry[] top = new Entry[0];
+        private int topSize;
+        private Entry[] terminal;
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            Node node = new Node();
+            newLabels[at] = c;
+            newChildren[at] = node;
+            labels = newLabels;
+            children = newChildren;
+            return node;
+        }
+
+        private boolean contains(Entry entry) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == entry) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Adds or re-positions an entry whose score is new or has only gone up
+        private void offer(Entry entry) {
+            int at = -1;
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == entry) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at < 0) {
+                if (topSize < MAX_SUGGESTIONS) {
+                    if (top.length == topSize) {
+                        top = Arrays.copyOf(top, Math.min(MAX_SUGGESTIONS, Math.max(2, topSize * 2)));
+                    }
+                    at = topSize++;
+                } else if (RANKING.compare(entry, top[topSize - 1]) < 0) {
+                    at = topSize - 1;
+                } else {
+                    return;
+                }
+                top[at] = entry;
+            }
+            while (at > 0 && RANKING.compare(top[at], top[at - 1]) < 0) {
+                Entry swap = top[at - 1];
+                top[at - 1] = top[at];
+                top[at] = swap;
+                at--;
+            }
+        }
+
+        private void recompute() {
+            top = new Entry[0];
+            topSize = 0;
+            if (terminal != null) {
+                for (Entry entry : terminal) {
+                    offer(entry);
+                }
+            }
+            for (Node child : children) {
+                for (int i = 0; i < child.topSize; i++) {
+                    offer(child.top[i]);
+                }
+            }
+        }
+
+        private void addTerminal(Entry entry) {
+            if (terminal == null) {
+                terminal = new Entry[] { entry };
+                return;
+            }
+            for (Entry existing : terminal) {
+                if (existing == entry) {
+                    return;
+                }
+            }
+            terminal = Arrays.copyOf(terminal, terminal.length + 1);
+            terminal[terminal.length - 1] = entry;
+        }
+
+        private void removeTerminal(Entry entry) {
+            if (terminal == null) {
+                return;
+            }
+            Entry[] kept = new Entry[terminal.length];
+            int count = 0;
+            for (Entry existing : terminal) {
+                if (existing != entry) {
+                    kept[count++] = existing;
+                }
+            }
+            terminal = count == 0 ? null : Arrays.copyOf(kept, count);
+        }
+    }
+}